@@ -0,0 +1,13 @@
+package com.github.reggar.ignorehashequals.benchmarks;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+@Retention(SOURCE)
+@Target(TYPE)
+@interface CacheHashCode {
+  boolean eager() default false;
+}
@@ -0,0 +1,83 @@
+package com.github.reggar.ignorehashequals.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of equals() and hashCode() for each {@link Values.Implementation}. Run with the gc
+ * profiler (the default in build.gradle) to see allocation per call as well.
+ *
+ * <p>Each call picks the next of {@value #COUNT} distinct instances, so that the branches and
+ * caches see a realistic mix rather than a single pair of objects.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EqualsHashCodeBenchmark {
+  private static final int COUNT = 1024;
+
+  @Param({"EXTENSION_IGNORE", "EXTENSION_INCLUDE", "EXTENSION_CACHED", "AUTO_VALUE",
+      "HAND_WRITTEN"})
+  public Values.Implementation implementation;
+
+  private final Object[] values = new Object[COUNT];
+  /** Equal to {@link #values}, but distinct instances. */
+  private final Object[] equalCopies = new Object[COUNT];
+  /**
+   * Built from another seed, so differing from {@link #values} in the id, which equals() compares
+   * first, and in most other properties too. The cached implementation compares the hash codes
+   * before any property.
+   */
+  private final Object[] differentFirst = new Object[COUNT];
+  /** Differing from {@link #values} in the last element of the samples array only. */
+  private final Object[] differentLast = new Object[COUNT];
+  private int index;
+
+  @Setup public void setUp() {
+    for (int seed = 0; seed < COUNT; seed++) {
+      String requestId = "request-" + seed;
+      values[seed] = implementation.create(new Values.Fields(seed, requestId));
+      equalCopies[seed] = implementation.create(new Values.Fields(seed, requestId));
+
+      Values.Fields first = new Values.Fields(seed + COUNT, requestId);
+      differentFirst[seed] = implementation.create(first);
+
+      Values.Fields last = new Values.Fields(seed, requestId);
+      last.samples[last.samples.length - 1]++;
+      differentLast[seed] = implementation.create(last);
+    }
+  }
+
+  @Benchmark public int valueHashCode() {
+    return values[next()].hashCode();
+  }
+
+  @Benchmark public boolean equalsEqual() {
+    int i = next();
+    return values[i].equals(equalCopies[i]);
+  }
+
+  @Benchmark public boolean equalsDifferentFirst() {
+    int i = next();
+    return values[i].equals(differentFirst[i]);
+  }
+
+  @Benchmark public boolean equalsDifferentLast() {
+    int i = next();
+    return values[i].equals(differentLast[i]);
+  }
+
+  private int next() {
+    int i = index;
+    index = (i + 1) & (COUNT - 1);
+    return i;
+  }
+}
@@ -0,0 +1,61 @@
+package com.github.reggar.ignorehashequals.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of {@link HashMap#get} and {@link HashMap#put} keyed by each
+ * {@link Values.Implementation}, at several map sizes. Lookups use equal copies of the keys, so
+ * every call goes through both hashCode() and equals().
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HashMapBenchmark {
+  @Param({"16", "1024", "65536"})
+  public int size;
+
+  @Param({"EXTENSION_IGNORE", "EXTENSION_INCLUDE", "EXTENSION_CACHED", "AUTO_VALUE",
+      "HAND_WRITTEN"})
+  public Values.Implementation implementation;
+
+  private Map<Object, Integer> map;
+  private Object[] keys;
+  private int index;
+
+  @Setup public void setUp() {
+    map = new HashMap<>();
+    keys = new Object[size];
+    for (int seed = 0; seed < size; seed++) {
+      String requestId = "request-" + seed;
+      map.put(implementation.create(new Values.Fields(seed, requestId)), seed);
+      keys[seed] = implementation.create(new Values.Fields(seed, requestId));
+    }
+  }
+
+  @Benchmark public Integer get() {
+    return map.get(keys[next()]);
+  }
+
+  /** Replaces an existing mapping, so the map keeps its size and never resizes. */
+  @Benchmark public Integer put() {
+    int i = next();
+    return map.put(keys[i], i);
+  }
+
+  private int next() {
+    int i = index;
+    index = i + 1 == size ? 0 : i + 1;
+    return i;
+  }
+}
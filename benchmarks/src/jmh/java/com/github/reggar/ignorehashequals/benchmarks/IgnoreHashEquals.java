@@ -0,0 +1,12 @@
+package com.github.reggar.ignorehashequals.benchmarks;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+@Retention(SOURCE)
+@Target(METHOD)
+@interface IgnoreHashEquals {
+}
@@ -0,0 +1,14 @@
+package com.github.reggar.ignorehashequals.benchmarks;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.CLASS;
+
+@Retention(CLASS)
+@Target({METHOD, PARAMETER, FIELD})
+@interface Nullable {
+}
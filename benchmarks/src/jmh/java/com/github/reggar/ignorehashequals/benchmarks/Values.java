@@ -0,0 +1,226 @@
+package com.github.reggar.ignorehashequals.benchmarks;
+
+import com.google.auto.value.AutoValue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * One value shape, covering every primitive, a nullable object, a string, an array and a
+ * collection, implemented several ways so that their equals() and hashCode() can be compared.
+ * {@code requestId} plays the property that the extension is used to leave out; only the plain
+ * AutoValue version compares it, so the benchmarks give equal values the same request id.
+ */
+final class Values {
+  private Values() {
+  }
+
+  /** The ways the shape is implemented. */
+  enum Implementation {
+    /** The extension, ignoring requestId with {@code @IgnoreHashEquals}. */
+    EXTENSION_IGNORE {
+      @Override Object create(Fields f) {
+        return new AutoValue_Values_Ignoring(f.id, f.timestamp, f.score, f.ratio, f.port, f.flags,
+            f.grade, f.active, f.name, f.region, f.samples, f.tags, f.requestId);
+      }
+    },
+    /** The extension, including everything but requestId with {@code @IncludeHashEquals}. */
+    EXTENSION_INCLUDE {
+      @Override Object create(Fields f) {
+        return new AutoValue_Values_Including(f.id, f.timestamp, f.score, f.ratio, f.port, f.flags,
+            f.grade, f.active, f.name, f.region, f.samples, f.tags, f.requestId);
+      }
+    },
+    /** The extension in ignore mode, with a lazily cached hash code. */
+    EXTENSION_CACHED {
+      @Override Object create(Fields f) {
+        return new AutoValue_Values_Cached(f.id, f.timestamp, f.score, f.ratio, f.port, f.flags,
+            f.grade, f.active, f.name, f.region, f.samples, f.tags, f.requestId);
+      }
+    },
+    /** AutoValue's own equals() and hashCode(), the extension does not apply. */
+    AUTO_VALUE {
+      @Override Object create(Fields f) {
+        return new AutoValue_Values_Plain(f.id, f.timestamp, f.score, f.ratio, f.port, f.flags,
+            f.grade, f.active, f.name, f.region, f.samples, f.tags, f.requestId);
+      }
+    },
+    /** The equals() and hashCode() an IDE would write, with Objects.equals and Objects.hash. */
+    HAND_WRITTEN {
+      @Override Object create(Fields f) {
+        return new HandWritten(f.id, f.timestamp, f.score, f.ratio, f.port, f.flags, f.grade,
+            f.active, f.name, f.region, f.samples, f.tags, f.requestId);
+      }
+    };
+
+    abstract Object create(Fields fields);
+  }
+
+  /** The property values of one instance, derived from a seed. */
+  static final class Fields {
+    final int id;
+    final long timestamp;
+    final double score;
+    final float ratio;
+    final short port;
+    final byte flags;
+    final char grade;
+    final boolean active;
+    final String name;
+    final String region;
+    final int[] samples;
+    final List<String> tags;
+    final String requestId;
+
+    Fields(int seed, String requestId) {
+      this.id = seed;
+      this.timestamp = 1_500_000_000_000L + seed * 1_000L;
+      this.score = seed * 0.5;
+      this.ratio = seed % 100 / 100f;
+      this.port = (short) (8000 + seed % 1000);
+      this.flags = (byte) seed;
+      this.grade = (char) ('A' + seed % 5);
+      this.active = seed % 2 == 0;
+      this.name = seed % 10 == 0 ? null : "name-" + seed;
+      this.region = "region-" + seed % 16;
+      this.samples = new int[16];
+      for (int i = 0; i < samples.length; i++) {
+        samples[i] = seed * 31 + i;
+      }
+      this.tags = Arrays.asList("tag-" + seed % 3, "tag-" + seed % 7, "tag-" + seed % 11);
+      this.requestId = requestId;
+    }
+  }
+
+  @AutoValue abstract static class Ignoring {
+    abstract int id();
+    abstract long timestamp();
+    abstract double score();
+    abstract float ratio();
+    abstract short port();
+    abstract byte flags();
+    abstract char grade();
+    abstract boolean active();
+    @Nullable abstract String name();
+    abstract String region();
+    @SuppressWarnings("mutable") abstract int[] samples();
+    abstract List<String> tags();
+    @IgnoreHashEquals abstract String requestId();
+  }
+
+  @AutoValue abstract static class Including {
+    @IncludeHashEquals abstract int id();
+    @IncludeHashEquals abstract long timestamp();
+    @IncludeHashEquals abstract double score();
+    @IncludeHashEquals abstract float ratio();
+    @IncludeHashEquals abstract short port();
+    @IncludeHashEquals abstract byte flags();
+    @IncludeHashEquals abstract char grade();
+    @IncludeHashEquals abstract boolean active();
+    @IncludeHashEquals @Nullable abstract String name();
+    @IncludeHashEquals abstract String region();
+    @IncludeHashEquals @SuppressWarnings("mutable") abstract int[] samples();
+    @IncludeHashEquals abstract List<String> tags();
+    abstract String requestId();
+  }
+
+  @CacheHashCode
+  @AutoValue abstract static class Cached {
+    abstract int id();
+    abstract long timestamp();
+    abstract double score();
+    abstract float ratio();
+    abstract short port();
+    abstract byte flags();
+    abstract char grade();
+    abstract boolean active();
+    @Nullable abstract String name();
+    abstract String region();
+    @SuppressWarnings("mutable") abstract int[] samples();
+    abstract List<String> tags();
+    @IgnoreHashEquals abstract String requestId();
+  }
+
+  @AutoValue abstract static class Plain {
+    abstract int id();
+    abstract long timestamp();
+    abstract double score();
+    abstract float ratio();
+    abstract short port();
+    abstract byte flags();
+    abstract char grade();
+    abstract boolean active();
+    @Nullable abstract String name();
+    abstract String region();
+    @SuppressWarnings("mutable") abstract int[] samples();
+    abstract List<String> tags();
+    abstract String requestId();
+  }
+
+  static final class HandWritten {
+    private final int id;
+    private final long timestamp;
+    private final double score;
+    private final float ratio;
+    private final short port;
+    private final byte flags;
+    private final char grade;
+    private final boolean active;
+    private final String name;
+    private final String region;
+    private final int[] samples;
+    private final List<String> tags;
+    private final String requestId;
+
+    HandWritten(int id, long timestamp, double score, float ratio, short port, byte flags,
+                char grade, boolean active, String name, String region, int[] samples,
+                List<String> tags, String requestId) {
+      this.id = id;
+      this.timestamp = timestamp;
+      this.score = score;
+      this.ratio = ratio;
+      this.port = port;
+      this.flags = flags;
+      this.grade = grade;
+      this.active = active;
+      this.name = name;
+      this.region = region;
+      this.samples = samples;
+      this.tags = tags;
+      this.requestId = requestId;
+    }
+
+    @Override public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      HandWritten that = (HandWritten) o;
+      return id == that.id
+          && timestamp == that.timestamp
+          && Double.compare(that.score, score) == 0
+          && Float.compare(that.ratio, ratio) == 0
+          && port == that.port
+          && flags == that.flags
+          && grade == that.grade
+          && active == that.active
+          && Objects.equals(name, that.name)
+          && region.equals(that.region)
+          && Arrays.equals(samples, that.samples)
+          && tags.equals(that.tags);
+    }
+
+    @Override public int hashCode() {
+      int result = Objects.hash(id, timestamp, score, ratio, port, flags, grade, active, name,
+          region, tags);
+      return 31 * result + Arrays.hashCode(samples);
+    }
+
+    @Override public String toString() {
+      return "HandWritten{id=" + id + ", requestId=" + requestId + "}";
+    }
+  }
+}
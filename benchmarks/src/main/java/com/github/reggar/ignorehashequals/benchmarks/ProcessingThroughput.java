@@ -0,0 +1,281 @@
+package com.github.reggar.ignorehashequals.benchmarks;
+
+import com.github.reggar.ignorehashequals.AutoValueIgnoreHashEqualsExtension;
+import com.google.auto.value.extension.AutoValueExtension;
+import com.google.auto.value.processor.AutoValueProcessor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Measures annotation processing throughput: compiles a few thousand synthetic {@code @AutoValue}
+ * classes in process with {@code -proc:only}, once with AutoValue alone and once with this
+ * extension added, and reports classes per second and peak heap for both. The difference is the
+ * cost of the extension.
+ *
+ * <p>The classes vary in property count (1 to 20), property types, nullability and in how they use
+ * the extension: not at all, {@code @IgnoreHashEquals}, {@code @IncludeHashEquals} and
+ * {@code @CacheHashCode}. Generated sources are kept in memory and discarded.
+ *
+ * <pre>
+ * ./gradlew :benchmarks:processingThroughput -Pargs="--classes 4000 --iterations 10"
+ * </pre>
+ */
+public final class ProcessingThroughput {
+  private static final String PACKAGE = "synthetic";
+  private static final String[] TYPES = {
+      "int", "long", "double", "boolean", "String", "@Nullable String", "int[]",
+      "java.util.List<String>", "Integer", "java.util.concurrent.TimeUnit"
+  };
+
+  private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+  private final List<JavaFileObject> sources;
+
+  private ProcessingThroughput(int classes) {
+    this.sources = generateSources(classes);
+  }
+
+  public static void main(String[] args) throws IOException {
+    int classes = 2000;
+    int warmup = 3;
+    int iterations = 5;
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "--classes":
+          classes = Integer.parseInt(args[++i]);
+          break;
+        case "--warmup":
+          warmup = Integer.parseInt(args[++i]);
+          break;
+        case "--iterations":
+          iterations = Integer.parseInt(args[++i]);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown argument " + args[i]
+              + ", expected --classes, --warmup or --iterations.");
+      }
+    }
+
+    ProcessingThroughput harness = new ProcessingThroughput(classes);
+    List<AutoValueExtension> none = Collections.emptyList();
+    List<AutoValueExtension> extension =
+        Collections.<AutoValueExtension>singletonList(new AutoValueIgnoreHashEqualsExtension());
+
+    for (int i = 0; i < warmup; i++) {
+      harness.run(none);
+      harness.run(extension);
+    }
+
+    Result baseline = new Result("AutoValue");
+    Result withExtension = new Result("AutoValue + extension");
+    for (int i = 0; i < iterations; i++) {
+      baseline.add(harness.run(none));
+      withExtension.add(harness.run(extension));
+    }
+
+    System.out.println(classes + " classes, " + iterations + " iterations");
+    System.out.println(baseline.format(classes));
+    System.out.println(withExtension.format(classes));
+    System.out.println(String.format(Locale.ROOT, "Extension cost: %.1f us per class",
+        (withExtension.bestNanos() - baseline.bestNanos()) / 1e3 / classes));
+  }
+
+  /** Compiles every source once with the given extensions, returning {nanos, peak heap bytes}. */
+  private long[] run(List<AutoValueExtension> extensions) throws IOException {
+    System.gc();
+    List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+        heapPools.add(pool);
+      }
+    }
+
+    StringWriter diagnostics = new StringWriter();
+    try (StandardJavaFileManager standardFileManager =
+             compiler.getStandardFileManager(null, Locale.ROOT, null)) {
+      JavaFileManager fileManager = new InMemoryOutput(standardFileManager);
+      JavaCompiler.CompilationTask task = compiler.getTask(diagnostics, fileManager, null,
+          Arrays.asList("-proc:only", "-nowarn"), null, sources);
+      task.setProcessors(Collections.singletonList(new AutoValueProcessor(extensions)));
+
+      long start = System.nanoTime();
+      boolean success = task.call();
+      long elapsed = System.nanoTime() - start;
+      if (!success) {
+        throw new IllegalStateException("Compilation failed:\n" + diagnostics);
+      }
+
+      long peakHeap = 0;
+      for (MemoryPoolMXBean pool : heapPools) {
+        peakHeap += pool.getPeakUsage().getUsed();
+      }
+      return new long[] {elapsed, peakHeap};
+    }
+  }
+
+  private static List<JavaFileObject> generateSources(int classes) {
+    List<JavaFileObject> sources = new ArrayList<>();
+    sources.add(source("IgnoreHashEquals", annotation("IgnoreHashEquals", "METHOD")));
+    sources.add(source("IncludeHashEquals", annotation("IncludeHashEquals", "METHOD")));
+    sources.add(source("Nullable", annotation("Nullable", "METHOD, ElementType.PARAMETER")));
+    sources.add(source("CacheHashCode", annotation("CacheHashCode", "TYPE")));
+
+    for (int i = 0; i < classes; i++) {
+      String name = "Value" + i;
+      int mode = i % 4;
+      int properties = 1 + i % 20;
+
+      StringBuilder source = new StringBuilder()
+          .append("package ").append(PACKAGE).append(";\n")
+          .append(mode == 3 ? "@CacheHashCode\n" : "")
+          .append("@com.google.auto.value.AutoValue public abstract class ").append(name)
+          .append(" {\n");
+      for (int p = 0; p < properties; p++) {
+        String annotation = "";
+        if (mode == 1 || mode == 3) {
+          annotation = p % 3 == 2 ? "@IgnoreHashEquals " : "";
+        } else if (mode == 2) {
+          annotation = p % 3 != 2 ? "@IncludeHashEquals " : "";
+        }
+        String type = TYPES[(i + p) % TYPES.length];
+        source.append("  ").append(annotation)
+            .append(type.equals("int[]") ? "@SuppressWarnings(\"mutable\") " : "")
+            .append("public abstract ").append(type).append(" p").append(p).append("();\n");
+      }
+      sources.add(source(name, source.append("}\n").toString()));
+    }
+    return sources;
+  }
+
+  private static String annotation(String name, String targets) {
+    return "package " + PACKAGE + ";\n"
+        + "import java.lang.annotation.ElementType;\n"
+        + "@java.lang.annotation.Target({ElementType." + targets + "})\n"
+        + "public @interface " + name + " {}\n";
+  }
+
+  private static JavaFileObject source(String name, final String content) {
+    URI uri = URI.create("string:///" + PACKAGE + "/" + name + ".java");
+    return new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+      @Override public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+        return content;
+      }
+    };
+  }
+
+  /**
+   * Keeps everything javac and the processors write in memory, where javac can read generated
+   * sources back for the next round, and drops it with the compilation. The javac 8 file manager
+   * rejects file objects of other implementations in {@code isSameFile} and
+   * {@code inferBinaryName}, so those answer for the in-memory files and the sources themselves.
+   */
+  private static final class InMemoryOutput extends ForwardingJavaFileManager<JavaFileManager> {
+    InMemoryOutput(JavaFileManager fileManager) {
+      super(fileManager);
+    }
+
+    @Override public JavaFileObject getJavaFileForOutput(Location location, String className,
+        JavaFileObject.Kind kind, FileObject sibling) {
+      return new MemoryFile(className, kind);
+    }
+
+    @Override public boolean isSameFile(FileObject a, FileObject b) {
+      if (a instanceof SimpleJavaFileObject || b instanceof SimpleJavaFileObject) {
+        return a.toUri().equals(b.toUri());
+      }
+      return super.isSameFile(a, b);
+    }
+
+    @Override public String inferBinaryName(Location location, JavaFileObject file) {
+      if (file instanceof MemoryFile) {
+        return ((MemoryFile) file).className;
+      }
+      return super.inferBinaryName(location, file);
+    }
+  }
+
+  private static final class MemoryFile extends SimpleJavaFileObject {
+    final String className;
+    private final StringWriter content = new StringWriter();
+
+    MemoryFile(String className, Kind kind) {
+      super(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind);
+      this.className = className;
+    }
+
+    @Override public OutputStream openOutputStream() {
+      return new ByteArrayOutputStream();
+    }
+
+    @Override public Writer openWriter() {
+      return content;
+    }
+
+    @Override public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return content.toString();
+    }
+  }
+
+  private static final class Result {
+    private final String name;
+    private final List<long[]> runs = new ArrayList<>();
+
+    Result(String name) {
+      this.name = name;
+    }
+
+    void add(long[] run) {
+      runs.add(run);
+    }
+
+    long bestNanos() {
+      long best = Long.MAX_VALUE;
+      for (long[] run : runs) {
+        best = Math.min(best, run[0]);
+      }
+      return best;
+    }
+
+    long maxPeakHeap() {
+      long max = 0;
+      for (long[] run : runs) {
+        max = Math.max(max, run[1]);
+      }
+      return max;
+    }
+
+    String format(int classes) {
+      long total = 0;
+      for (long[] run : runs) {
+        total += run[0];
+      }
+      double mean = (double) total / runs.size();
+      return String.format(Locale.ROOT,
+          "%-22s best %8.0f classes/s, mean %8.0f classes/s, peak heap %6.1f MB",
+          name, classes / (bestNanos() / 1e9), classes / (mean / 1e9),
+          maxPeakHeap() / (1024.0 * 1024.0));
+    }
+  }
+}
@@ -0,0 +1,11 @@
+package com.github.reggar.ignorehashequals.benchmarks;
+
+import org.junit.Test;
+
+public final class ProcessingThroughputTest {
+  /** Runs the harness on a few classes, so that it keeps working on every JDK the build uses. */
+  @Test public void smallRunCompletes() throws Exception {
+    ProcessingThroughput.main(new String[] {"--classes", "24", "--warmup", "0",
+        "--iterations", "1"});
+  }
+}
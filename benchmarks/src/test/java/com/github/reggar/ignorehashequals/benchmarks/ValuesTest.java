@@ -0,0 +1,52 @@
+package com.github.reggar.ignorehashequals.benchmarks;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/** Checks that the values EqualsHashCodeBenchmark compares are equal or unequal as it assumes. */
+public final class ValuesTest {
+  private static final int SEEDS = 64;
+
+  @Test public void sameFieldsGiveEqualValues() {
+    for (Values.Implementation implementation : Values.Implementation.values()) {
+      for (int seed = 0; seed < SEEDS; seed++) {
+        Object value = implementation.create(new Values.Fields(seed, "request-" + seed));
+        Object copy = implementation.create(new Values.Fields(seed, "request-" + seed));
+        assertEquals(implementation.name(), value, copy);
+        assertEquals(implementation.name(), value.hashCode(), copy.hashCode());
+      }
+    }
+  }
+
+  @Test public void otherSeedGivesUnequalValues() {
+    for (Values.Implementation implementation : Values.Implementation.values()) {
+      for (int seed = 0; seed < SEEDS; seed++) {
+        Object value = implementation.create(new Values.Fields(seed, "request-" + seed));
+        Object different = implementation.create(new Values.Fields(seed + 1024, "request-" + seed));
+        assertNotEquals(implementation.name(), value, different);
+      }
+    }
+  }
+
+  @Test public void lastSampleAloneGivesUnequalValues() {
+    for (Values.Implementation implementation : Values.Implementation.values()) {
+      for (int seed = 0; seed < SEEDS; seed++) {
+        Object value = implementation.create(new Values.Fields(seed, "request-" + seed));
+        Values.Fields last = new Values.Fields(seed, "request-" + seed);
+        last.samples[last.samples.length - 1]++;
+        assertNotEquals(implementation.name(), value, implementation.create(last));
+      }
+    }
+  }
+
+  @Test public void onlyAutoValueComparesRequestId() {
+    for (Values.Implementation implementation : Values.Implementation.values()) {
+      Object value = implementation.create(new Values.Fields(1, "request-a"));
+      Object otherRequest = implementation.create(new Values.Fields(1, "request-b"));
+      assertEquals(implementation.name(), implementation != Values.Implementation.AUTO_VALUE,
+          value.equals(otherRequest));
+    }
+  }
+}
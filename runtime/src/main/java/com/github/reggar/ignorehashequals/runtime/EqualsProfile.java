@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2016 Robert Eggar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.reggar.ignorehashequals.runtime;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts, per property, how often it was the first one to differ in calls to a generated
+ * {@code equals()}. Generated code registers one instance per class when the extension runs with
+ * {@code -AignoreHashEquals.recordEqualsProfile=true}.
+ *
+ * <p>Start the JVM with {@code -DignoreHashEquals.equalsProfile=<file>} to have all profiles
+ * written to that file on exit, or call {@link #writeTo(File)} directly. Counts already in the
+ * file are added to, so several runs can be merged into one profile. Each call only adds what was
+ * counted since the previous one, so writing periodically, or by hand before the exit hook runs,
+ * does not count a mismatch twice. Pass the file back to the next build with
+ * {@code -AignoreHashEquals.equalsProfile=<file>}.
+ */
+public final class EqualsProfile {
+  /** System property naming the file that all profiles are written to when the JVM exits. */
+  public static final String OUTPUT_PROPERTY = "ignoreHashEquals.equalsProfile";
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final ConcurrentMap<String, EqualsProfile> PROFILES = new ConcurrentHashMap<>();
+  private static final AtomicBoolean SHUTDOWN_HOOK_INSTALLED = new AtomicBoolean();
+
+  private final String className;
+  private final String[] properties;
+  private final LongAdder[] mismatches;
+  /** The counts {@link #writeTo(File)} has already added to a file, guarded by the class. */
+  private final long[] written;
+
+  private EqualsProfile(String className, String[] properties) {
+    this.className = className;
+    this.properties = properties.clone();
+    this.mismatches = new LongAdder[properties.length];
+    this.written = new long[properties.length];
+    for (int i = 0; i < mismatches.length; i++) {
+      mismatches[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Returns the profile for {@code className}, whose equals() compares {@code properties} in the
+   * given order.
+   */
+  public static EqualsProfile register(String className, String... properties) {
+    EqualsProfile profile = new EqualsProfile(className, properties);
+    EqualsProfile existing = PROFILES.putIfAbsent(className, profile);
+    if (existing != null) {
+      return existing;
+    }
+
+    String output = System.getProperty(OUTPUT_PROPERTY);
+    if (output != null && SHUTDOWN_HOOK_INSTALLED.compareAndSet(false, true)) {
+      final File file = new File(output);
+      Runtime.getRuntime().addShutdownHook(new Thread("EqualsProfile writer") {
+        @Override public void run() {
+          try {
+            writeTo(file);
+          } catch (IOException e) {
+            System.err.println("Failed to write equals profile to " + file + ": " + e);
+          }
+        }
+      });
+    }
+    return profile;
+  }
+
+  /** Records that the property at {@code index} was the first one to differ. */
+  public void recordMismatch(int index) {
+    mismatches[index].increment();
+  }
+
+  public String className() {
+    return className;
+  }
+
+  public long mismatches(String property) {
+    for (int i = 0; i < properties.length; i++) {
+      if (properties[i].equals(property)) {
+        return mismatches[i].sum();
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Adds the counts of every registered profile to {@code file}, creating it if needed. Only the
+   * mismatches counted since the previous call are added.
+   */
+  public static synchronized void writeTo(File file) throws IOException {
+    Map<String, Long> counts = new TreeMap<>();
+    if (file.exists()) {
+      try (Reader reader = new InputStreamReader(new FileInputStream(file), UTF_8)) {
+        read(reader, counts);
+      }
+    }
+    // Counts keep growing while the file is written, so note the sums that were added rather
+    // than resetting the counters afterwards.
+    Map<EqualsProfile, long[]> sums = new HashMap<>();
+    for (EqualsProfile profile : PROFILES.values()) {
+      long[] sum = profile.sums();
+      for (int i = 0; i < sum.length; i++) {
+        add(counts, profile.key(i), sum[i] - profile.written[i]);
+      }
+      sums.put(profile, sum);
+    }
+
+    try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), UTF_8)) {
+      write(writer, counts);
+    }
+    for (Map.Entry<EqualsProfile, long[]> entry : sums.entrySet()) {
+      long[] sum = entry.getValue();
+      System.arraycopy(sum, 0, entry.getKey().written, 0, sum.length);
+    }
+  }
+
+  /** Writes the counts of every registered profile to {@code writer}. */
+  public static void writeTo(Writer writer) throws IOException {
+    Map<String, Long> counts = new TreeMap<>();
+    collect(counts);
+    write(writer, counts);
+  }
+
+  private static void collect(Map<String, Long> counts) {
+    for (EqualsProfile profile : PROFILES.values()) {
+      long[] sum = profile.sums();
+      for (int i = 0; i < sum.length; i++) {
+        add(counts, profile.key(i), sum[i]);
+      }
+    }
+  }
+
+  private long[] sums() {
+    long[] sums = new long[mismatches.length];
+    for (int i = 0; i < sums.length; i++) {
+      sums[i] = mismatches[i].sum();
+    }
+    return sums;
+  }
+
+  private String key(int index) {
+    return className + '#' + properties[index];
+  }
+
+  private static void read(Reader reader, Map<String, Long> counts) throws IOException {
+    BufferedReader lines = new BufferedReader(reader);
+    for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+      line = line.trim();
+      int separator = line.lastIndexOf('=');
+      if (line.isEmpty() || line.startsWith("#") || separator < 0) {
+        continue;
+      }
+      try {
+        add(counts, line.substring(0, separator).trim(),
+            Long.parseLong(line.substring(separator + 1).trim()));
+      } catch (NumberFormatException e) {
+        throw new IOException("Malformed equals profile entry: " + line, e);
+      }
+    }
+  }
+
+  private static void write(Writer writer, Map<String, Long> counts) throws IOException {
+    writer.write("# First differing property in equals(), per class.\n");
+    for (Map.Entry<String, Long> entry : counts.entrySet()) {
+      writer.write(entry.getKey() + '=' + entry.getValue() + '\n');
+    }
+    writer.flush();
+  }
+
+  private static void add(Map<String, Long> counts, String key, long count) {
+    Long previous = counts.get(key);
+    counts.put(key, previous == null ? count : previous + count);
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2016 Robert Eggar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.reggar.ignorehashequals.runtime;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counts the calls to one class's generated {@code equals()} and {@code hashCode()}: how many
+ * {@code hashCode()} calls there were, how many {@code equals()} calls compared two distinct
+ * instances and what they returned, which property was the first to differ, and, for classes with
+ * {@code @CacheHashCode}, how many unequal instances had equal hash codes. Generated code
+ * registers one instance per class when the extension runs with
+ * {@code -AignoreHashEquals.instrument=true}. Every count is a {@link LongAdder}, so concurrent
+ * callers do not contend on a shared counter.
+ *
+ * <p>Read the counts with {@link #all()}, or start the JVM with
+ * {@code -DignoreHashEquals.jmx=true} to have every instance registered as an MXBean named
+ * {@code com.github.reggar.ignorehashequals:type=HashEqualsCounters,name="<class>"}.
+ */
+public final class HashEqualsCounters implements HashEqualsCountersMXBean {
+  /** System property that registers every instance with the platform MBean server when true. */
+  public static final String JMX_PROPERTY = "ignoreHashEquals.jmx";
+
+  private static final ConcurrentMap<String, HashEqualsCounters> COUNTERS =
+      new ConcurrentHashMap<>();
+
+  private final String className;
+  private final String[] properties;
+  private final LongAdder hashCodeCalls = new LongAdder();
+  private final LongAdder equalResults = new LongAdder();
+  private final LongAdder unequalResults = new LongAdder();
+  private final LongAdder collisions = new LongAdder();
+  private final LongAdder[] mismatches;
+
+  private HashEqualsCounters(String className, String[] properties) {
+    this.className = className;
+    this.properties = properties.clone();
+    this.mismatches = new LongAdder[properties.length];
+    for (int i = 0; i < mismatches.length; i++) {
+      mismatches[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Returns the counters for {@code className}, whose equals() compares {@code properties} in the
+   * given order.
+   */
+  public static HashEqualsCounters register(String className, String... properties) {
+    HashEqualsCounters counters = new HashEqualsCounters(className, properties);
+    HashEqualsCounters existing = COUNTERS.putIfAbsent(className, counters);
+    if (existing != null) {
+      return existing;
+    }
+
+    if (Boolean.getBoolean(JMX_PROPERTY)) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(counters, new ObjectName(
+            "com.github.reggar.ignorehashequals:type=HashEqualsCounters,name="
+                + ObjectName.quote(className)));
+      } catch (JMException e) {
+        System.err.println("Failed to register hash/equals counters for " + className + ": " + e);
+      }
+    }
+    return counters;
+  }
+
+  /** The counters of every instrumented class loaded so far, by class name. */
+  public static List<HashEqualsCounters> all() {
+    List<HashEqualsCounters> all = new ArrayList<>(COUNTERS.values());
+    Collections.sort(all, new Comparator<HashEqualsCounters>() {
+      @Override public int compare(HashEqualsCounters a, HashEqualsCounters b) {
+        return a.className.compareTo(b.className);
+      }
+    });
+    return all;
+  }
+
+  /** Records a call to hashCode(). */
+  public void recordHashCode() {
+    hashCodeCalls.increment();
+  }
+
+  /** Records an equals() call that compared all properties and returned true. */
+  public void recordEqual() {
+    equalResults.increment();
+  }
+
+  /** Records an equals() call that returned false because property {@code index} differed. */
+  public void recordUnequal(int index) {
+    unequalResults.increment();
+    mismatches[index].increment();
+  }
+
+  /**
+   * Records an equals() call that returned false because the property at {@code index} differed,
+   * between instances whose cached hash codes were equal if {@code sameHash}.
+   */
+  public void recordUnequal(int index, boolean sameHash) {
+    recordUnequal(index);
+    if (sameHash) {
+      collisions.increment();
+    }
+  }
+
+  @Override public String getClassName() {
+    return className;
+  }
+
+  @Override public long getHashCodeCalls() {
+    return hashCodeCalls.sum();
+  }
+
+  @Override public long getEqualsCalls() {
+    return equalResults.sum() + unequalResults.sum();
+  }
+
+  @Override public long getEqualResults() {
+    return equalResults.sum();
+  }
+
+  @Override public long getUnequalResults() {
+    return unequalResults.sum();
+  }
+
+  @Override public long getCollisions() {
+    return collisions.sum();
+  }
+
+  @Override public Map<String, Long> getMismatches() {
+    Map<String, Long> counts = new LinkedHashMap<>();
+    for (int i = 0; i < properties.length; i++) {
+      counts.put(properties[i], mismatches[i].sum());
+    }
+    return counts;
+  }
+
+  @Override public String toString() {
+    return className + "{hashCodeCalls=" + getHashCodeCalls() + ", equalResults="
+        + getEqualResults() + ", unequalResults=" + getUnequalResults() + ", collisions="
+        + getCollisions() + ", mismatches=" + getMismatches() + "}";
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2016 Robert Eggar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.reggar.ignorehashequals.runtime;
+
+import java.util.Map;
+
+/** The JMX view of one class's {@link HashEqualsCounters}. */
+public interface HashEqualsCountersMXBean {
+  String getClassName();
+
+  long getHashCodeCalls();
+
+  long getEqualsCalls();
+
+  long getEqualResults();
+
+  long getUnequalResults();
+
+  long getCollisions();
+
+  /** How often each property was the first one to differ, keyed by property name. */
+  Map<String, Long> getMismatches();
+}
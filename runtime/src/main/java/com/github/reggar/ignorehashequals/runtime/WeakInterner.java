@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2016 Robert Eggar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.reggar.ignorehashequals.runtime;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps values to one canonical instance per equality class, holding the canonical instances
+ * weakly so that they are collected once nothing else refers to them. Generated code creates one
+ * per class annotated with {@code @Intern} and exposes it as a static {@code intern(value)}.
+ *
+ * <p>Values are compared with their own {@code equals()} and {@code hashCode()}, so for generated
+ * classes two instances that differ only in ignored properties collapse to whichever was interned
+ * first. Interned instances can be compared with {@code ==}. Safe for concurrent use.
+ */
+public final class WeakInterner<T> {
+  private final ConcurrentMap<Entry<T>, Entry<T>> entries = new ConcurrentHashMap<>();
+  private final ReferenceQueue<T> queue = new ReferenceQueue<>();
+
+  /**
+   * Returns the canonical instance equal to {@code value}, making {@code value} the canonical
+   * instance if there is none yet.
+   */
+  public T intern(T value) {
+    if (value == null) {
+      throw new NullPointerException("value == null");
+    }
+    expungeCollected();
+
+    Entry<T> entry = new Entry<>(value, queue);
+    while (true) {
+      Entry<T> existing = entries.putIfAbsent(entry, entry);
+      if (existing == null) {
+        return value;
+      }
+      T canonical = existing.get();
+      if (canonical != null) {
+        return canonical;
+      }
+      // Collected between the lookup and get(), drop it and try again.
+      entries.remove(existing, existing);
+    }
+  }
+
+  /** The number of canonical instances, including collected ones not yet expunged. */
+  public int size() {
+    expungeCollected();
+    return entries.size();
+  }
+
+  private void expungeCollected() {
+    for (Reference<? extends T> reference = queue.poll(); reference != null;
+        reference = queue.poll()) {
+      entries.remove(reference, reference);
+    }
+  }
+
+  /**
+   * A weak reference that is equal to another entry while both referents are alive and equal.
+   * Once collected it is only equal to itself, which is enough to remove it.
+   */
+  private static final class Entry<T> extends WeakReference<T> {
+    private final int hashCode;
+
+    Entry(T value, ReferenceQueue<T> queue) {
+      super(value, queue);
+      this.hashCode = value.hashCode();
+    }
+
+    @Override public boolean equals(Object o) {
+      if (o == this) {
+        return true;
+      }
+      if (!(o instanceof Entry)) {
+        return false;
+      }
+      Entry<?> that = (Entry<?>) o;
+      if (hashCode != that.hashCode) {
+        return false;
+      }
+      T value = get();
+      return value != null && value.equals(that.get());
+    }
+
+    @Override public int hashCode() {
+      return hashCode;
+    }
+  }
+}
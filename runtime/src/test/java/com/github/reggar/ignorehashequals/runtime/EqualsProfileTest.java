@@ -0,0 +1,83 @@
+package com.github.reggar.ignorehashequals.runtime;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EqualsProfileTest {
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test public void recordMismatch() {
+    EqualsProfile profile = EqualsProfile.register("test.RecordMismatch", "b", "a");
+    profile.recordMismatch(0);
+    profile.recordMismatch(0);
+    profile.recordMismatch(1);
+
+    assertEquals("test.RecordMismatch", profile.className());
+    assertEquals(2, profile.mismatches("b"));
+    assertEquals(1, profile.mismatches("a"));
+    assertEquals(0, profile.mismatches("c"));
+  }
+
+  @Test public void registerReturnsExistingProfile() {
+    EqualsProfile profile = EqualsProfile.register("test.Register", "a");
+    assertSame(profile, EqualsProfile.register("test.Register", "a"));
+  }
+
+  @Test public void writeToWriter() throws Exception {
+    EqualsProfile.register("test.WriteToWriter", "a", "b").recordMismatch(1);
+
+    StringWriter writer = new StringWriter();
+    EqualsProfile.writeTo(writer);
+
+    String profile = writer.toString();
+    assertTrue(profile, profile.contains("test.WriteToWriter#a=0\n"));
+    assertTrue(profile, profile.contains("test.WriteToWriter#b=1\n"));
+  }
+
+  @Test public void writeToFileAddsToExistingCounts() throws Exception {
+    File file = temporaryFolder.newFile("equals.profile");
+    Files.write(file.toPath(), Arrays.asList("test.WriteToFile#a=5"), Charset.forName("UTF-8"));
+
+    EqualsProfile profile = EqualsProfile.register("test.WriteToFile", "a");
+    profile.recordMismatch(0);
+    EqualsProfile.writeTo(file);
+
+    List<String> lines = Files.readAllLines(file.toPath(), Charset.forName("UTF-8"));
+    assertTrue(lines.toString(), lines.contains("test.WriteToFile#a=6"));
+  }
+
+  @Test public void writeToFileTwiceAddsEachMismatchOnce() throws Exception {
+    File file = temporaryFolder.newFile("twice.profile");
+    Files.write(file.toPath(), Arrays.asList("test.WriteTwice#a=5"), Charset.forName("UTF-8"));
+
+    EqualsProfile profile = EqualsProfile.register("test.WriteTwice", "a", "b");
+    profile.recordMismatch(0);
+    profile.recordMismatch(1);
+    EqualsProfile.writeTo(file);
+    EqualsProfile.writeTo(file);
+
+    List<String> lines = Files.readAllLines(file.toPath(), Charset.forName("UTF-8"));
+    assertTrue(lines.toString(), lines.contains("test.WriteTwice#a=6"));
+    assertTrue(lines.toString(), lines.contains("test.WriteTwice#b=1"));
+
+    profile.recordMismatch(0);
+    EqualsProfile.writeTo(file);
+
+    lines = Files.readAllLines(file.toPath(), Charset.forName("UTF-8"));
+    assertTrue(lines.toString(), lines.contains("test.WriteTwice#a=7"));
+    assertTrue(lines.toString(), lines.contains("test.WriteTwice#b=1"));
+    assertEquals(2, profile.mismatches("a"));
+  }
+}
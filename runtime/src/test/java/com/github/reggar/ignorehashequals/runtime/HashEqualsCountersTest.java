@@ -0,0 +1,60 @@
+package com.github.reggar.ignorehashequals.runtime;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HashEqualsCountersTest {
+  @Test public void recordCalls() {
+    HashEqualsCounters counters = HashEqualsCounters.register("test.RecordCalls", "b", "a");
+    for (int i = 0; i < 5; i++) {
+      counters.recordHashCode();
+    }
+    counters.recordEqual();
+    counters.recordUnequal(0, false);
+    counters.recordUnequal(1, true);
+    counters.recordUnequal(1);
+
+    assertEquals("test.RecordCalls", counters.getClassName());
+    assertEquals(4, counters.getEqualsCalls());
+    assertEquals(1, counters.getEqualResults());
+    assertEquals(3, counters.getUnequalResults());
+    assertEquals(1, counters.getCollisions());
+    assertEquals(5, counters.getHashCodeCalls());
+
+    Map<String, Long> mismatches = new LinkedHashMap<>();
+    mismatches.put("b", 1L);
+    mismatches.put("a", 2L);
+    assertEquals(mismatches, counters.getMismatches());
+  }
+
+  @Test public void registerReturnsExistingCounters() {
+    HashEqualsCounters counters = HashEqualsCounters.register("test.Register", "a");
+    assertSame(counters, HashEqualsCounters.register("test.Register", "a"));
+    assertTrue(HashEqualsCounters.all().contains(counters));
+  }
+
+  @Test public void registerWithJmx() throws Exception {
+    System.setProperty(HashEqualsCounters.JMX_PROPERTY, "true");
+    try {
+      HashEqualsCounters.register("test.Jmx", "a").recordEqual();
+    } finally {
+      System.clearProperty(HashEqualsCounters.JMX_PROPERTY);
+    }
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(
+        "com.github.reggar.ignorehashequals:type=HashEqualsCounters,name=\"test.Jmx\"");
+    assertEquals(1L, server.getAttribute(name, "EqualResults"));
+    assertEquals("test.Jmx", server.getAttribute(name, "ClassName"));
+  }
+}
@@ -0,0 +1,73 @@
+package com.github.reggar.ignorehashequals.runtime;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class WeakInternerTest {
+  @Test public void internReturnsFirstEqualInstance() {
+    WeakInterner<String> interner = new WeakInterner<>();
+    String first = new String("value");
+    String second = new String("value");
+    assertNotSame(first, second);
+
+    assertSame(first, interner.intern(first));
+    assertSame(first, interner.intern(second));
+    assertEquals(1, interner.size());
+  }
+
+  @Test public void unequalValuesStayDistinct() {
+    WeakInterner<String> interner = new WeakInterner<>();
+    interner.intern("a");
+    interner.intern("b");
+    assertEquals(2, interner.size());
+  }
+
+  @Test(expected = NullPointerException.class) public void internNullFails() {
+    new WeakInterner<String>().intern(null);
+  }
+
+  @Test public void collectedValuesAreExpunged() throws Exception {
+    WeakInterner<Object> interner = new WeakInterner<>();
+    for (int i = 0; i < 100; i++) {
+      interner.intern("value-" + i);
+    }
+
+    for (int i = 0; i < 50 && interner.size() > 0; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertEquals(0, interner.size());
+  }
+
+  @Test public void concurrentInternAgreesOnOneInstance() throws Exception {
+    final WeakInterner<String> interner = new WeakInterner<>();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 16; i++) {
+        results.add(executor.submit(new Callable<String>() {
+          @Override public String call() {
+            return interner.intern(new String("shared"));
+          }
+        }));
+      }
+
+      String canonical = results.get(0).get();
+      for (Future<String> result : results) {
+        assertSame(canonical, result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -20,49 +20,190 @@ import com.google.auto.value.extension.AutoValueExtension;
 import com.squareup.javapoet.ArrayTypeName;
 import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
 
 @AutoService(AutoValueExtension.class) public final class AutoValueIgnoreHashEqualsExtension
     extends AutoValueExtension {
 
-  private static AnnotationType annotationType;
+  private static final String CACHED_HASH_CODE = "cachedHashCode";
+  private static final String COMPUTE_HASH_CODE = "computeHashCode";
+
+  /** The simple name of {@code @AutoValue.Builder}. */
+  private static final String BUILDER_ANNOTATION = "Builder";
+
+  private static final String EQUALS_TYPED = "equalsTyped";
+  private static final String HASHING_STRATEGY = "HashingStrategy";
+  private static final String EQUALS_PROFILE = "EQUALS_PROFILE";
+  private static final ClassName EQUALS_PROFILE_CLASS =
+      ClassName.get("com.github.reggar.ignorehashequals.runtime", "EqualsProfile");
+
+  static final String INSTRUMENT_OPTION = "ignoreHashEquals.instrument";
+  private static final String COUNTERS = "HASH_EQUALS_COUNTERS";
+  private static final ClassName COUNTERS_CLASS =
+      ClassName.get("com.github.reggar.ignorehashequals.runtime", "HashEqualsCounters");
+
+  private static final String INTERN_ANNOTATION = "Intern";
+  private static final String INTERN = "intern";
+  private static final String INTERNER = "INTERNER";
+  private static final ClassName WEAK_INTERNER_CLASS =
+      ClassName.get("com.github.reggar.ignorehashequals.runtime", "WeakInterner");
+
+  private static final String KEY_ANNOTATION = "HashEqualsKey";
+  private static final String KEY = "Key";
+  private static final String KEY_METHOD = "key";
+  private static final String KEY_OF = "keyOf";
+  private static final String KEY_HASH_CODE = "hashCode";
+
+  /**
+   * The classes found applicable and not generated yet. AutoValue may process classes from
+   * several rounds or compilations on different threads, so nothing about a class is kept in
+   * shared mutable state other than this map.
+   */
+  private final ConcurrentMap<TypeElement, ValueClass> valueClasses = new ConcurrentHashMap<>();
+
+  /** Time spent in applicable() per class, kept until generateClass() reports it. */
+  private final ConcurrentMap<TypeElement, Long> applicableNanos = new ConcurrentHashMap<>();
+
+  private volatile MismatchProfile mismatchProfile;
 
   @Override public boolean applicable(Context context) {
-    Map<String, ExecutableElement> properties = context.properties();
-    for (ExecutableElement element : properties.values()) {
-      Set<String> annotations = getAnnotations(element);
-
-      annotationType = AnnotationType.from(annotations);
-      if (annotationType == AnnotationType.ERROR) {
-        throw new RuntimeException("Annotations are mutually exclusive, " +
-                "only one annotation type can be included at the same time.");
+    long start = System.nanoTime();
+    Set<String> consumedProperties = consumeProperties(context);
+    ValueClass valueClass = ValueClass.analyze(context.processingEnvironment(),
+        context.autoValueClass(), context.properties(), consumedProperties);
+
+    Set<String> classAnnotations = valueClass.annotations();
+    boolean applicable = valueClass.annotationType() != AnnotationType.NOT_PRESENT
+        || classAnnotations.contains(HashCodeCache.ANNOTATION_NAME)
+        || classAnnotations.contains(HashStrategy.ANNOTATION_NAME)
+        || classAnnotations.contains(INTERN_ANNOTATION)
+        || classAnnotations.contains(KEY_ANNOTATION)
+        || classAnnotations.contains(ComparatorGenerator.ANNOTATION_NAME)
+        || HashEqualsMethods.hasGroups(valueClass.properties())
+        || valueClass.hasIdentityProperties()
+        || !consumedProperties.isEmpty()
+        || !consumeMethods(context).isEmpty();
+    if (applicable) {
+      valueClasses.put(context.autoValueClass(), valueClass);
+    }
+
+    ProcessingStats.Output statsOutput = getStatsOutput(context);
+    if (statsOutput.isEnabled()) {
+      long elapsed = System.nanoTime() - start;
+      if (applicable) {
+        applicableNanos.put(context.autoValueClass(), elapsed);
+      } else {
+        reportStats(context, statsOutput, valueClass, false, elapsed, 0);
       }
+    }
+    return applicable;
+  }
 
-      if (annotationType != AnnotationType.NOT_PRESENT) {
-        return true;
+  /**
+   * Returns the analysis made by {@link #applicable}, or a fresh one if there is none or if other
+   * extensions have since consumed some of the properties.
+   */
+  private ValueClass takeValueClass(Context context) {
+    ValueClass valueClass = valueClasses.remove(context.autoValueClass());
+    if (valueClass == null || !valueClass.hasProperties(context.properties().keySet())) {
+      valueClass = ValueClass.analyze(context.processingEnvironment(), context.autoValueClass(),
+          context.properties(), consumeProperties(context));
+    }
+    return valueClass;
+  }
+
+  /**
+   * Abstract methods that look like properties but that this extension implements, such as
+   * {@code long longHashCode()} and {@code int stableHash()}. One that the builder has a setter
+   * for is an ordinary property, and is left to AutoValue.
+   */
+  @Override public Set<String> consumeProperties(Context context) {
+    Set<String> consumed = new LinkedHashSet<>();
+    for (Map.Entry<String, ExecutableElement> entry : context.properties().entrySet()) {
+      if ((LongHashCodeGenerator.isLongHashCode(entry.getKey(), entry.getValue())
+              || StableHashGenerator.isStableHash(entry.getKey(), entry.getValue())
+              || StableHashGenerator.isStableHash64(entry.getKey(), entry.getValue()))
+          && !hasBuilderSetter(context, entry.getKey())) {
+        consumed.add(entry.getKey());
       }
     }
+    return consumed;
+  }
 
+  /**
+   * Returns true if a nested {@code @AutoValue.Builder} of the class has an abstract
+   * {@code property(value)} or {@code setProperty(value)} setter.
+   */
+  private static boolean hasBuilderSetter(Context context, String property) {
+    Elements elements = context.processingEnvironment().getElementUtils();
+    String setter = "set" + Character.toUpperCase(property.charAt(0)) + property.substring(1);
+    for (TypeElement type
+        : ElementFilter.typesIn(context.autoValueClass().getEnclosedElements())) {
+      if (getAnnotation(type, BUILDER_ANNOTATION) == null) {
+        continue;
+      }
+      for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(type))) {
+        if ((method.getSimpleName().contentEquals(property)
+                || method.getSimpleName().contentEquals(setter))
+            && method.getModifiers().contains(Modifier.ABSTRACT)
+            && method.getParameters().size() == 1) {
+          return true;
+        }
+      }
+    }
     return false;
   }
 
+  /**
+   * Abstract non-property methods that this extension implements, {@code hashInto(sink)},
+   * {@code equalsTyped(that)} and, with {@code @HashEqualsComparator}, {@code compareTo(that)}.
+   */
+  @Override public Set<ExecutableElement> consumeMethods(Context context) {
+    boolean comparator =
+        getAnnotation(context.autoValueClass(), ComparatorGenerator.ANNOTATION_NAME) != null;
+    Set<ExecutableElement> consumed = new LinkedHashSet<>();
+    for (ExecutableElement method : context.abstractMethods()) {
+      if (HashIntoGenerator.isHashInto(method) || isEqualsTyped(context, method)
+          || (comparator && isCompareTo(context, method))) {
+        consumed.add(method);
+      }
+    }
+    return consumed;
+  }
+
   @Override
   public IncrementalExtensionType incrementalType(ProcessingEnvironment processingEnvironment) {
     return IncrementalExtensionType.ISOLATING;
@@ -70,27 +211,427 @@ import javax.lang.model.element.Modifier;
 
   @Override public String generateClass(Context context, String className, String classToExtend,
       boolean isFinal) {
+    long start = System.nanoTime();
     String packageName = context.packageName();
     ClassName superName = ClassName.get(context.autoValueClass());
-    Map<String, ExecutableElement> properties = context.properties();
+    ValueClass valueClass = takeValueClass(context);
+    List<Property> properties = valueClass.properties();
+    List<Property> includedProperties = valueClass.includedProperties();
+    HashCodeCache hashCodeCache = getHashCodeCache(context);
+    HashStrategy hashStrategy =
+        getHashStrategy(context.processingEnvironment(), context.autoValueClass());
+    List<Property> equalsProperties = getEqualsProperties(context, valueClass);
+    boolean recordEqualsProfile = Boolean.parseBoolean(
+        context.processingEnvironment().getOptions().get(MismatchProfile.RECORD_OPTION));
+    boolean instrument = Boolean.parseBoolean(
+        context.processingEnvironment().getOptions().get(INSTRUMENT_OPTION));
+    PropertyExpressions thisAndThat = new PropertyExpressions("this", "that",
+        context.processingEnvironment().getSourceVersion());
 
-    TypeSpec subclass = TypeSpec.classBuilder(className) //
+    TypeSpec.Builder subclass = TypeSpec.classBuilder(className) //
         .addModifiers(isFinal ? Modifier.FINAL : Modifier.ABSTRACT) //
-        .superclass(ClassName.get(packageName, classToExtend)) //
-        .addMethod(generateConstructor(properties)) //
-        .addMethod(generateEquals(superName, properties)) //
-        .addMethod(generateHashCode(superName, properties)) //
+        .superclass(ClassName.get(packageName, classToExtend));
+
+    if (recordEqualsProfile) {
+      subclass.addField(generateRegisteredField(EQUALS_PROFILE_CLASS, EQUALS_PROFILE,
+          context.autoValueClass(), equalsProperties));
+    }
+    if (instrument) {
+      subclass.addField(generateRegisteredField(COUNTERS_CLASS, COUNTERS,
+          context.autoValueClass(), equalsProperties));
+    }
+    if (hashCodeCache.isCached()) {
+      subclass.addField(generateCachedHashCodeField(hashCodeCache));
+    }
+    boolean intern = isNonGenericAnnotated(context, valueClass, INTERN_ANNOTATION)
+        && !isMemberNameTaken(context, INTERN_ANNOTATION, INTERN);
+    boolean key = isNonGenericAnnotated(context, valueClass, KEY_ANNOTATION)
+        && !isMemberNameTaken(context, KEY_ANNOTATION, KEY_METHOD, KEY_OF, KEY);
+    if (isNonGenericAnnotated(context, valueClass, ComparatorGenerator.ANNOTATION_NAME)) {
+      ComparatorGenerator comparator = new ComparatorGenerator(context.processingEnvironment());
+      try {
+        subclass.addField(comparator.generate(superName, includedProperties))
+            .addMethods(comparator.helpers());
+        if (findCompareTo(context) != null) {
+          subclass.addMethod(ComparatorGenerator.generateCompareTo(superName));
+        }
+      } catch (IllegalArgumentException e) {
+        context.processingEnvironment().getMessager()
+            .printMessage(Diagnostic.Kind.ERROR, e.getMessage(), context.autoValueClass());
+      }
+    }
+    if (intern) {
+      subclass.addField(generateInternerField(superName));
+    }
+
+    ExecutableElement equalsTyped = findEqualsTyped(context);
+    CodeBlock equalsReturn =
+        generateEqualsReturn(thisAndThat, equalsProperties, hashCodeCache, recordEqualsProfile,
+            instrument);
+
+    subclass.addMethod(generateConstructor(properties, hashCodeCache));
+    if (equalsTyped == null) {
+      subclass.addMethod(generateEquals(superName, equalsReturn));
+    } else {
+      subclass.addMethod(generateDelegatingEquals(superName))
+          .addMethod(generateEqualsTyped(superName, equalsReturn))
+          .addType(generateHashingStrategy(context.processingEnvironment().getElementUtils(),
+              ClassName.get(packageName, className, HASHING_STRATEGY), superName));
+    }
+    subclass.addMethod(generateHashCode(thisAndThat, includedProperties, hashCodeCache,
+        hashStrategy, instrument));
+
+    if (hashCodeCache.isCached()) {
+      subclass.addMethod(generateComputeHashCode(thisAndThat, includedProperties, hashStrategy));
+    }
+    if (hashCodeCache == HashCodeCache.EAGER && isSerializable(context)) {
+      if (isFinal) {
+        subclass.addMethod(generateReadResolve(className, properties));
+      } else {
+        context.processingEnvironment().getMessager().printMessage(Diagnostic.Kind.ERROR,
+            "@" + HashCodeCache.ANNOTATION_NAME + "(eager = true) on a Serializable class needs "
+                + "its generated class to be final, to recompute the hash code on "
+                + "deserialization. Use @" + HashCodeCache.ANNOTATION_NAME + " instead.",
+            context.autoValueClass());
+      }
+    }
+
+    if (hasAbstractMethod(context, LongHashCodeGenerator.METHOD_NAME, TypeKind.LONG)
+        && !hasBuilderSetter(context, LongHashCodeGenerator.METHOD_NAME)) {
+      LongHashCodeGenerator longHashCode =
+          new LongHashCodeGenerator(context.processingEnvironment());
+      subclass.addMethod(longHashCode.generate(includedProperties))
+          .addMethods(longHashCode.helpers());
+      for (Property property : includedProperties) {
+        if (longHashCode.narrows(property.type())) {
+          context.processingEnvironment().getMessager().printMessage(Diagnostic.Kind.WARNING,
+              LongHashCodeGenerator.METHOD_NAME + "() hashes " + property.name() + " of type "
+                  + property.typeName() + " through its 32-bit hashCode().",
+              property.element());
+        }
+      }
+    }
+
+    boolean stableHash64 =
+        hasAbstractMethod(context, StableHashGenerator.METHOD_NAME_64, TypeKind.LONG)
+            && !hasBuilderSetter(context, StableHashGenerator.METHOD_NAME_64);
+    boolean stableHash = hasAbstractMethod(context, StableHashGenerator.METHOD_NAME, TypeKind.INT)
+        && !hasBuilderSetter(context, StableHashGenerator.METHOD_NAME);
+    if (stableHash64 || stableHash) {
+      StableHashGenerator stableHashGenerator =
+          new StableHashGenerator(context.processingEnvironment());
+      try {
+        if (stableHash64) {
+          subclass.addMethod(stableHashGenerator.generate64(includedProperties));
+        }
+        if (stableHash) {
+          subclass.addMethod(stableHashGenerator.generate(includedProperties, stableHash64));
+        }
+        subclass.addMethods(stableHashGenerator.helpers());
+      } catch (IllegalArgumentException e) {
+        context.processingEnvironment().getMessager()
+            .printMessage(Diagnostic.Kind.ERROR, e.getMessage(), context.autoValueClass());
+      }
+    }
+
+    ExecutableElement hashInto = findHashInto(context);
+    if (hashInto != null) {
+      HashIntoGenerator hashIntoGenerator =
+          new HashIntoGenerator(context.processingEnvironment(), hashInto);
+      try {
+        subclass.addMethod(hashIntoGenerator.generate(includedProperties));
+      } catch (IllegalArgumentException e) {
+        context.processingEnvironment().getMessager()
+            .printMessage(Diagnostic.Kind.ERROR, e.getMessage(), hashInto);
+      }
+    }
+
+    if (intern) {
+      subclass.addMethod(generateIntern(superName));
+    }
+    if (key) {
+      ClassName keyName = ClassName.get(packageName, className, KEY);
+      subclass.addMethod(generateKeyMethod(keyName, includedProperties))
+          .addMethod(generateKeyOf(keyName, superName, ClassName.get(packageName, className)))
+          .addType(generateKey(thisAndThat, keyName, includedProperties,
+              equalsProperties));
+    }
+
+    // Properties outside equals() may still be compared by a group, and need the same helpers.
+    Set<Property> comparedProperties = new LinkedHashSet<>(includedProperties);
+    try {
+      Map<String, List<Property>> groups = HashEqualsMethods.getGroups(
+          context.processingEnvironment().getElementUtils(), properties);
+      for (Map.Entry<String, List<Property>> group : groups.entrySet()) {
+        addGroup(context, subclass, ClassName.get(packageName, className), group.getKey(),
+            group.getValue(), hashStrategy);
+        comparedProperties.addAll(group.getValue());
+      }
+    } catch (IllegalArgumentException e) {
+      context.processingEnvironment().getMessager()
+          .printMessage(Diagnostic.Kind.ERROR, e.getMessage(), context.autoValueClass());
+    }
+    subclass.addMethods(PropertyExpressions.helpers(new ArrayList<>(comparedProperties)));
+
+    JavaFile javaFile = JavaFile.builder(packageName, subclass.build()).build();
+    String source = javaFile.toString();
+
+    ProcessingStats.Output statsOutput = getStatsOutput(context);
+    if (statsOutput.isEnabled()) {
+      Long applicableTime = applicableNanos.remove(context.autoValueClass());
+      reportStats(context, statsOutput, valueClass, true,
+          applicableTime == null ? 0 : applicableTime, System.nanoTime() - start);
+    }
+    return source;
+  }
+
+  private static ProcessingStats.Output getStatsOutput(Context context) {
+    return ProcessingStats.Output.from(
+        context.processingEnvironment().getOptions().get(ProcessingStats.OPTION));
+  }
+
+  private static void reportStats(Context context, ProcessingStats.Output statsOutput,
+                                  ValueClass valueClass, boolean applicable,
+                                  long applicableNanos, long generateClassNanos) {
+    TypeElement autoValueClass = context.autoValueClass();
+    new ProcessingStats(autoValueClass.getQualifiedName().toString(), applicable,
+        valueClass.properties().size(), valueClass.includedProperties().size(),
+        applicableNanos, generateClassNanos)
+        .report(context.processingEnvironment(), autoValueClass, statsOutput);
+  }
+
+  private static HashCodeCache getHashCodeCache(Context context) {
+    AnnotationMirror annotation =
+        getAnnotation(context.autoValueClass(), HashCodeCache.ANNOTATION_NAME);
+    if (annotation == null) {
+      return HashCodeCache.NONE;
+    }
+
+    Elements elements = context.processingEnvironment().getElementUtils();
+    Object eager = getAnnotationValue(elements, annotation, HashCodeCache.EAGER_MEMBER);
+    return HashCodeCache.from(true, Boolean.TRUE.equals(eager));
+  }
+
+  /** The strategy from the class's {@code @HashStrategy}, or else from the processor option. */
+  static HashStrategy getHashStrategy(ProcessingEnvironment processingEnvironment,
+                                      TypeElement element) {
+    AnnotationMirror annotation = getAnnotation(element, HashStrategy.ANNOTATION_NAME);
+    if (annotation == null) {
+      return HashStrategy.from(processingEnvironment.getOptions().get(HashStrategy.OPTION));
+    }
+
+    // Accept both @HashStrategy("MURMUR3") and an enum constant such as @HashStrategy(MURMUR3).
+    Object value = getAnnotationValue(processingEnvironment.getElementUtils(), annotation, "value");
+    if (value instanceof VariableElement) {
+      value = ((VariableElement) value).getSimpleName();
+    }
+    return HashStrategy.from(value == null ? null : value.toString());
+  }
+
+  private static FieldSpec generateCachedHashCodeField(HashCodeCache hashCodeCache) {
+    FieldSpec.Builder builder = FieldSpec.builder(TypeName.INT, CACHED_HASH_CODE, Modifier.PRIVATE);
+    if (hashCodeCache == HashCodeCache.EAGER) {
+      // Final so that the value is safely published along with the rest of the instance. It is
+      // serialized with it, so Serializable classes get a readResolve() that recomputes it.
+      builder.addModifiers(Modifier.FINAL);
+    } else {
+      // Transient so that a deserialized instance recomputes rather than trusting a stale value.
+      builder.addModifiers(Modifier.TRANSIENT);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns true if the class carries the {@code annotation}, reporting an error instead if the
+   * class is generic; the static members generated for it cannot refer to type variables.
+   */
+  /**
+   * Returns true, and reports an error on the class, if the AutoValue class already has a method
+   * or member type, declared or inherited, named like one of the members that {@code annotation}
+   * generates. The generated member would otherwise clash with it in the generated source.
+   */
+  private static boolean isMemberNameTaken(Context context, String annotation,
+                                           String... generatedNames) {
+    Elements elements = context.processingEnvironment().getElementUtils();
+    TypeElement autoValueClass = context.autoValueClass();
+    for (Element member : elements.getAllMembers(autoValueClass)) {
+      if (member.getKind() != ElementKind.METHOD && !member.getKind().isClass()
+          && !member.getKind().isInterface()) {
+        continue;
+      }
+      for (String name : generatedNames) {
+        if (member.getSimpleName().contentEquals(name)) {
+          context.processingEnvironment().getMessager().printMessage(Diagnostic.Kind.ERROR,
+              "@" + annotation + " generates " + describe(generatedNames) + ", but "
+                  + autoValueClass.getSimpleName() + " already has a member named " + name
+                  + ".", autoValueClass);
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /** {@code key(), keyOf() and Key} for the names {@code key}, {@code keyOf} and {@code Key}. */
+  private static String describe(String... names) {
+    StringBuilder description = new StringBuilder();
+    for (int i = 0; i < names.length; i++) {
+      if (i > 0) {
+        description.append(i == names.length - 1 ? " and " : ", ");
+      }
+      description.append(names[i]);
+      if (Character.isLowerCase(names[i].charAt(0))) {
+        description.append("()");
+      }
+    }
+    return description.toString();
+  }
+
+  private static boolean isNonGenericAnnotated(Context context, ValueClass valueClass,
+                                               String annotation) {
+    if (!valueClass.annotations().contains(annotation)) {
+      return false;
+    }
+    if (!context.autoValueClass().getTypeParameters().isEmpty()) {
+      context.processingEnvironment().getMessager().printMessage(Diagnostic.Kind.ERROR,
+          "@" + annotation + " is not supported on generic classes.", context.autoValueClass());
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Static {@code groupEquals(a, b)} and {@code groupHashCode(value)} over the members of one
+   * {@code @HashEqualsGroup}, compared in the configured equals order, and the group's
+   * hashing strategy.
+   */
+  private static void addGroup(Context context, TypeSpec.Builder subclass, ClassName subclassName,
+                               String group, List<Property> members, HashStrategy hashStrategy) {
+    ProcessingEnvironment processingEnvironment = context.processingEnvironment();
+    TypeName typeName = HashEqualsMethods.wildcardTypeName(context.autoValueClass());
+    List<Property> equalsMembers = new ArrayList<>(members);
+    EqualsOrder.from(processingEnvironment.getOptions().get(EqualsOrder.OPTION))
+        .sort(equalsMembers);
+
+    subclass.addMethod(HashEqualsMethods.generateEquals(HashEqualsMethods.equalsName(group),
+        typeName, equalsMembers, processingEnvironment.getSourceVersion()))
+        .addMethod(HashEqualsMethods.generateHashCode(HashEqualsMethods.hashCodeName(group),
+            typeName, members, hashStrategy, processingEnvironment.getSourceVersion()))
+        .addType(HashEqualsMethods.generateHashingStrategy(
+            processingEnvironment.getElementUtils(), subclassName, group, typeName));
+  }
+
+  private static FieldSpec generateInternerField(ClassName superName) {
+    return FieldSpec.builder(ParameterizedTypeName.get(WEAK_INTERNER_CLASS, superName), INTERNER,
+        Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+        .initializer("new $T<>()", WEAK_INTERNER_CLASS)
+        .build();
+  }
+
+  /**
+   * A static {@code intern(value)} returning the canonical instance equal to {@code value}, as
+   * decided by the generated equals() and hashCode(). Canonical instances are held weakly.
+   */
+  private static MethodSpec generateIntern(ClassName superName) {
+    return MethodSpec.methodBuilder(INTERN)
+        .addModifiers(Modifier.STATIC)
+        .returns(superName)
+        .addParameter(superName, "value")
+        .addStatement("return $N.intern(value)", INTERNER)
+        .build();
+  }
+
+  /**
+   * A static {@code keyOf(value)}, for callers that hold the value by its abstract type and so
+   * cannot call {@code key()} directly.
+   */
+  private static MethodSpec generateKeyOf(ClassName keyName, ClassName superName,
+                                          ClassName generatedName) {
+    return MethodSpec.methodBuilder(KEY_OF)
+        .addModifiers(Modifier.STATIC)
+        .returns(keyName)
+        .addParameter(superName, "value")
+        .addStatement("return (($T) value).$N()", generatedName, KEY_METHOD)
+        .build();
+  }
+
+  /** {@code key()}, copying the included properties and the hash code into a new Key. */
+  private static MethodSpec generateKeyMethod(ClassName keyName,
+                                             List<Property> includedProperties) {
+    CodeBlock.Builder arguments = CodeBlock.builder().add("hashCode()");
+    for (Property property : includedProperties) {
+      arguments.add(", $N()", property.methodName());
+    }
+    return MethodSpec.methodBuilder(KEY_METHOD)
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+        .returns(keyName)
+        .addStatement("return new $T($L)", keyName, arguments.build())
         .build();
+  }
+
+  /**
+   * A nested {@code Key} holding only the included properties, with the same equals() and
+   * hashCode() as the value, so that maps can index by key without retaining ignored properties.
+   * The value's hash code is passed in and stored, which also lets equals() reject most unequal
+   * keys before comparing properties.
+   */
+  private static TypeSpec generateKey(PropertyExpressions thisAndThat, ClassName keyName,
+                                      List<Property> includedProperties,
+                                      List<Property> equalsProperties) {
+    TypeSpec.Builder key = TypeSpec.classBuilder(KEY)
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+        .addField(TypeName.INT, KEY_HASH_CODE, Modifier.PRIVATE, Modifier.FINAL);
+    MethodSpec.Builder constructor = MethodSpec.constructorBuilder()
+        .addParameter(TypeName.INT, KEY_HASH_CODE)
+        .addStatement("this.$N = $N", KEY_HASH_CODE, KEY_HASH_CODE);
+    CodeBlock.Builder toString = CodeBlock.builder().add("return ");
+    String separator = KEY + "{";
+
+    for (Property property : includedProperties) {
+      key.addField(property.typeName(), property.name(), Modifier.PRIVATE, Modifier.FINAL);
+      constructor.addParameter(property.typeName(), property.name())
+          .addStatement("this.$N = $N", property.name(), property.name());
+      key.addMethod(MethodSpec.methodBuilder(property.methodName())
+          .addModifiers(Modifier.PUBLIC)
+          .returns(property.typeName())
+          .addStatement("return $N", property.name())
+          .build());
+      toString.add("$S + ", separator + property.name() + "=");
+      if (property.typeName() instanceof ArrayTypeName) {
+        toString.add("$T.toString($N) + ", Arrays.class, property.name());
+      } else {
+        toString.add("$N + ", property.name());
+      }
+      separator = ", ";
+    }
+    toString.add("$S", includedProperties.isEmpty() ? KEY + "{}" : "}");
 
-    JavaFile javaFile = JavaFile.builder(packageName, subclass).build();
-    return javaFile.toString();
+    return key.addMethod(constructor.build())
+        .addMethod(generateEquals(keyName,
+            generateEqualsReturn(thisAndThat, equalsProperties, HashCodeCache.EAGER, false,
+                false)))
+        .addMethod(MethodSpec.methodBuilder("hashCode")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .returns(TypeName.INT)
+            .addStatement("return $N", KEY_HASH_CODE)
+            .build())
+        .addMethod(MethodSpec.methodBuilder("toString")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .returns(String.class)
+            .addStatement(toString.build())
+            .build())
+        .build();
   }
 
-  private static MethodSpec generateConstructor(Map<String, ExecutableElement> properties) {
+  private static MethodSpec generateConstructor(List<Property> properties,
+                                                HashCodeCache hashCodeCache) {
     List<ParameterSpec> params = new ArrayList<>();
-    for (Map.Entry<String, ExecutableElement> entry : properties.entrySet()) {
-      TypeName typeName = TypeName.get(entry.getValue().getReturnType());
-      params.add(ParameterSpec.builder(typeName, entry.getKey()).build());
+    List<String> names = new ArrayList<>();
+    for (Property property : properties) {
+      params.add(ParameterSpec.builder(property.typeName(), property.name()).build());
+      names.add(property.name());
     }
 
     StringBuilder body = new StringBuilder("super(");
@@ -100,71 +641,145 @@ import javax.lang.model.element.Modifier;
     }
     body.append(")");
 
-    return MethodSpec.constructorBuilder() //
+    MethodSpec.Builder builder = MethodSpec.constructorBuilder() //
         .addParameters(params) //
-        .addStatement(body.toString(), properties.keySet().toArray()) //
-        .build();
+        .addStatement(body.toString(), names.toArray());
+
+    if (hashCodeCache == HashCodeCache.EAGER) {
+      builder.addStatement("this.$N = $N()", CACHED_HASH_CODE, COMPUTE_HASH_CODE);
+    }
+
+    return builder.build();
   }
 
-  private static MethodSpec generateHashCode(ClassName superName,
-                                             Map<String, ExecutableElement> properties) {
+  private static MethodSpec generateHashCode(PropertyExpressions thisAndThat,
+                                             List<Property> includedProperties,
+                                             HashCodeCache hashCodeCache,
+                                             HashStrategy hashStrategy,
+                                             boolean instrument) {
     MethodSpec.Builder builder = MethodSpec.methodBuilder("hashCode") //
         .addAnnotation(Override.class) //
         .addModifiers(Modifier.PUBLIC, Modifier.FINAL) //
-        .returns(TypeName.INT) //
-        .addCode("int h = 1;\n");
+        .returns(TypeName.INT);
+    if (instrument) {
+      builder.addStatement("$N.recordHashCode()", COUNTERS);
+    }
 
-    for (Map.Entry<String, ExecutableElement> entry : properties.entrySet()) {
-      ExecutableElement propertyElement = entry.getValue();
-      Set<String> propertyAnnotations = getAnnotations(propertyElement);
+    switch (hashCodeCache) {
+      case EAGER:
+        return builder
+            .addStatement("return $N", CACHED_HASH_CODE)
+            .build();
+      case LAZY:
+        // Racy single-check: the field is read once, and a thread that sees the default 0 simply
+        // recomputes the same value from the final properties, so no lock or volatile is needed.
+        return builder
+            .addStatement("int h = $N", CACHED_HASH_CODE)
+            .beginControlFlow("if (h == 0)")
+            .addStatement("h = $N()", COMPUTE_HASH_CODE)
+            .addStatement("$N = h", CACHED_HASH_CODE)
+            .endControlFlow()
+            .addStatement("return h")
+            .build();
+      default:
+        return builder
+            .addCode(generateHashCodeBody(thisAndThat, includedProperties, hashStrategy))
+            .build();
+    }
+  }
 
-      if (annotationType.shouldBeIncluded(propertyAnnotations)) {
-        builder.addCode("h *= 1000003;\n");
-        builder.addCode("h ^= " + generateHashCodeExpression(propertyElement) + ";");
-      }
+  /**
+   * A readResolve() replacing a deserialized instance with one constructed afresh. The eagerly
+   * cached hash code is final, so it would otherwise keep the value computed by the JVM that
+   * serialized the instance, and the hash codes of enums and of other values without a content
+   * hash differ from one JVM to the next.
+   */
+  private static MethodSpec generateReadResolve(String className, List<Property> properties) {
+    List<CodeBlock> values = new ArrayList<>();
+    for (Property property : properties) {
+      values.add(CodeBlock.of("this.$N()", property.methodName()));
+    }
+    return MethodSpec.methodBuilder("readResolve")
+        .addModifiers(Modifier.PRIVATE)
+        .returns(Object.class)
+        .addStatement("return new $N($L)", className, CodeBlock.join(values, ", "))
+        .build();
+  }
+
+  private static boolean isSerializable(Context context) {
+    Types types = context.processingEnvironment().getTypeUtils();
+    TypeElement serializable =
+        context.processingEnvironment().getElementUtils().getTypeElement("java.io.Serializable");
+    return types.isAssignable(context.autoValueClass().asType(), serializable.asType());
+  }
+
+  private static MethodSpec generateComputeHashCode(PropertyExpressions thisAndThat,
+                                                    List<Property> includedProperties,
+                                                    HashStrategy hashStrategy) {
+    return MethodSpec.methodBuilder(COMPUTE_HASH_CODE) //
+        .addModifiers(Modifier.PRIVATE) //
+        .returns(TypeName.INT) //
+        .addCode(generateHashCodeBody(thisAndThat, includedProperties, hashStrategy)) //
+        .build();
+  }
 
-      builder.addCode("\n");
+  private static CodeBlock generateHashCodeBody(PropertyExpressions thisAndThat,
+                                                List<Property> includedProperties,
+                                                HashStrategy hashStrategy) {
+    CodeBlock.Builder builder = CodeBlock.builder() //
+        .add(hashStrategy.initialize(includedProperties.size()));
+
+    for (Property property : includedProperties) {
+      builder.add(hashStrategy.mix(thisAndThat.hashCode(property)));
     }
 
     return builder
-        .addCode("return h;\n")
+        .add(hashStrategy.finish(includedProperties.size()))
+        .addStatement("return h")
         .build();
   }
 
-  private static CodeBlock generateHashCodeExpression(ExecutableElement propertyElement) {
-    String methodName = propertyElement.getSimpleName().toString();
-    TypeName propertyType = TypeName.get(propertyElement.getReturnType());
-    Set<String> propertyAnnotations = getAnnotations(propertyElement);
-
-    boolean nullable = propertyAnnotations.contains("Nullable");
-
-    if (propertyType.equals(TypeName.BYTE) || propertyType.equals(TypeName.SHORT) ||
-        propertyType.equals(TypeName.CHAR) || propertyType.equals(TypeName.INT)) {
-      return CodeBlock.of("this.$N()", methodName);
-    } else if (propertyType.equals(TypeName.LONG)) {
-      return CodeBlock.of("(this.$N() >>> 32) ^ this.$N()", methodName, methodName);
-    } else if (propertyType.equals(TypeName.FLOAT)) {
-      return CodeBlock.of("Float.floatToIntBits(this.$N())", methodName);
-    } else if (propertyType.equals(TypeName.DOUBLE)) {
-      return CodeBlock.of(
-          "(Double.doubleToLongBits(this.$N()) >>> 32) ^ Double.doubleToLongBits(this.$N())",
-          methodName, methodName);
-    } else if (propertyType.equals(TypeName.BOOLEAN)) {
-      return CodeBlock.of("this.$N() ? 1231 : 1237", methodName);
-    } else if (propertyType instanceof ArrayTypeName) {
-      return CodeBlock.of("$T.hashCode(this.$N())", Arrays.class, methodName);
-    } else {
-      if (nullable) {
-        return CodeBlock.of("($N() == null) ? 0 : this.$N().hashCode()", methodName, methodName);
-      } else {
-        return CodeBlock.of("this.$N().hashCode()", methodName);
+  /**
+   * Returns the properties that equals() compares, in the order it compares them.
+   */
+  private List<Property> getEqualsProperties(Context context, ValueClass valueClass) {
+    ProcessingEnvironment processingEnvironment = context.processingEnvironment();
+    List<Property> equalsProperties = new ArrayList<>(valueClass.includedProperties());
+
+    EqualsOrder equalsOrder =
+        EqualsOrder.from(processingEnvironment.getOptions().get(EqualsOrder.OPTION));
+    equalsOrder.sort(equalsProperties);
+
+    MismatchProfile mismatchProfile = getMismatchProfile(processingEnvironment);
+    if (!mismatchProfile.isEmpty()) {
+      sortByMismatches(mismatchProfile,
+          valueClass.element().getQualifiedName().toString(), equalsProperties);
+    }
+
+    return equalsProperties;
+  }
+
+  private MismatchProfile getMismatchProfile(ProcessingEnvironment processingEnvironment) {
+    // Loading twice from two threads is harmless, both read the same file.
+    MismatchProfile profile = mismatchProfile;
+    if (profile == null) {
+      String path = processingEnvironment.getOptions().get(MismatchProfile.OPTION);
+      profile = MismatchProfile.EMPTY;
+      if (path != null) {
+        try {
+          profile = MismatchProfile.load(path);
+        } catch (IOException e) {
+          processingEnvironment.getMessager().printMessage(Diagnostic.Kind.WARNING,
+              "Ignoring equals profile " + path + ": " + e.getMessage());
+        }
       }
+      mismatchProfile = profile;
     }
+    return profile;
   }
 
-  private static MethodSpec generateEquals(ClassName superName,
-                                           Map<String, ExecutableElement> properties) {
-    MethodSpec.Builder builder = MethodSpec.methodBuilder("equals") //
+  private static MethodSpec generateEquals(ClassName superName, CodeBlock equalsReturn) {
+    return MethodSpec.methodBuilder("equals") //
         .addAnnotation(Override.class) //
         .addModifiers(Modifier.PUBLIC, Modifier.FINAL) //
         .returns(TypeName.BOOLEAN) //
@@ -173,84 +788,271 @@ import javax.lang.model.element.Modifier;
         .addCode("  return true;\n")
         .addCode("}\n")
         .addCode("if (o instanceof $T) {\n", superName)
-        .addCode("  $T that = ($T) o;\n", superName, superName);
+        .addCode("  $T that = ($T) o;\n", superName, superName)
+        .addCode("$>$L$<", equalsReturn)
+        .addCode("}\n")
+        .addCode("return false;\n")
+        .build();
+  }
+
+  /** An equals(Object) that only checks the type and leaves the comparison to equalsTyped. */
+  private static MethodSpec generateDelegatingEquals(ClassName superName) {
+    return MethodSpec.methodBuilder("equals") //
+        .addAnnotation(Override.class) //
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL) //
+        .returns(TypeName.BOOLEAN) //
+        .addParameter(TypeName.OBJECT, "o")
+        .addCode("if (o == this) {\n")
+        .addCode("  return true;\n")
+        .addCode("}\n")
+        .addCode("if (o instanceof $T) {\n", superName)
+        .addCode("  return $N(($T) o);\n", EQUALS_TYPED, superName)
+        .addCode("}\n")
+        .addCode("return false;\n")
+        .build();
+  }
 
-    List<ExecutableElement> nonIgnoredExecutableElements = new ArrayList<>();
+  /**
+   * The comparison as a typed method, so that callers which already know both sides are of the
+   * value type skip the instanceof check and cast of equals(Object).
+   */
+  private static MethodSpec generateEqualsTyped(ClassName superName, CodeBlock equalsReturn) {
+    return MethodSpec.methodBuilder(EQUALS_TYPED) //
+        .addAnnotation(Override.class) //
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL) //
+        .returns(TypeName.BOOLEAN) //
+        .addParameter(superName, "that")
+        .addCode("if (that == this) {\n")
+        .addCode("  return true;\n")
+        .addCode("}\n")
+        .addCode("if (that == null) {\n")
+        .addCode("  return false;\n")
+        .addCode("}\n")
+        .addCode(equalsReturn)
+        .build();
+  }
 
-    for(Map.Entry<String, ExecutableElement> entry : properties.entrySet()) {
-      ExecutableElement propertyElement = entry.getValue();
-      Set<String> propertyAnnotations = getAnnotations(propertyElement);
+  /**
+   * The public {@code HashingStrategy} singleton, comparing with {@code equalsTyped} and hashing
+   * with {@code hashCode()}, for custom hash containers.
+   */
+  private static TypeSpec generateHashingStrategy(Elements elements, ClassName strategyName,
+                                                  ClassName superName) {
+    return HashEqualsMethods.generateHashingStrategy(elements, strategyName, superName,
+        CodeBlock.of("a == b || (a != null && a.$N(b))", EQUALS_TYPED),
+        CodeBlock.of("value == null ? 0 : value.hashCode()"));
+  }
 
-      if(annotationType.shouldBeIncluded(propertyAnnotations)) {
-        nonIgnoredExecutableElements.add(propertyElement);
-      }
+  /**
+   * The statements comparing {@code this} with a non-null {@code that} of the same type and
+   * returning the result.
+   */
+  private static CodeBlock generateEqualsReturn(PropertyExpressions thisAndThat,
+                                                List<Property> nonIgnoredProperties,
+                                                HashCodeCache hashCodeCache,
+                                                boolean recordEqualsProfile,
+                                                boolean instrument) {
+    if (recordEqualsProfile || instrument) {
+      return generateRecordingEqualsBody(thisAndThat, nonIgnoredProperties,
+          recordEqualsProfile, instrument && hashCodeCache.isCached(), instrument);
     }
 
-    if (nonIgnoredExecutableElements.size() == 0) {
-      builder.addCode("  return true");
+    CodeBlock.Builder builder = CodeBlock.builder();
+    if (nonIgnoredProperties.size() == 0) {
+      builder.add("return true");
     } else {
-      builder.addCode("  return ");
+      builder.add("return $>$>");
 
-      boolean last = false;
-      for (int i = 0; i < nonIgnoredExecutableElements.size(); i++) {
-        ExecutableElement propertyElement = nonIgnoredExecutableElements.get(i);
+      if (hashCodeCache.isCached()) {
+        // Both hashes are cached, so unequal instances are usually rejected without touching
+        // any of the properties.
+        builder.add("(this.hashCode() == that.hashCode())\n&& ");
+      }
 
-        if(i == nonIgnoredExecutableElements.size() - 1) {
-          last = true;
-        }
+      builder.add(thisAndThat.conjunction(nonIgnoredProperties))
+          .add("$<$<");
+    }
+
+    return builder.add(";\n").build();
+  }
 
-        builder.addCode(generateEqualsExpression(propertyElement));
-        if (!last) {
-          builder.addCode("\n      && ");
+  /**
+   * Compares one property at a time, recording the first one to differ in the class's
+   * EqualsProfile, HashEqualsCounters or both. The cached hash gate is left out so that every
+   * mismatch is attributed to a property. The counters also learn which calls returned true and,
+   * with {@code compareHashes}, whether unequal instances had equal hash codes. That is only done
+   * for cached hash codes, read with the same two hashCode() calls as the gate, since computing
+   * them would cost more than the comparison being measured.
+   */
+  private static CodeBlock generateRecordingEqualsBody(PropertyExpressions thisAndThat,
+                                                       List<Property> nonIgnoredProperties,
+                                                       boolean recordEqualsProfile,
+                                                       boolean compareHashes,
+                                                       boolean instrument) {
+    CodeBlock.Builder builder = CodeBlock.builder();
+    if (compareHashes) {
+      builder.addStatement("boolean sameHash = this.hashCode() == that.hashCode()");
+    }
+    List<Property> sizeChecked =
+        PropertyExpressions.getSizeCheckedProperties(nonIgnoredProperties);
+    for (int i = 0; i < nonIgnoredProperties.size(); i++) {
+      Property property = nonIgnoredProperties.get(i);
+      if (PropertyExpressions.isDeepComparison(property)) {
+        for (Property sized : sizeChecked) {
+          builder.beginControlFlow("if (!$L)", thisAndThat.sizeEquals(sized))
+              .add(recordMismatch(nonIgnoredProperties.indexOf(sized), recordEqualsProfile,
+                  compareHashes, instrument))
+              .addStatement("return false")
+              .endControlFlow();
         }
+        sizeChecked = Collections.emptyList();
       }
+      builder.beginControlFlow("if (!$L)", thisAndThat.equals(property))
+          .add(recordMismatch(i, recordEqualsProfile, compareHashes, instrument))
+          .addStatement("return false")
+          .endControlFlow();
+    }
+    if (instrument) {
+      builder.addStatement("$N.recordEqual()", COUNTERS);
     }
-
     return builder
-        .addCode(";\n")
-        .addCode("}\n")
-        .addCode("return false;\n")
+        .addStatement("return true")
         .build();
   }
 
-  private static CodeBlock generateEqualsExpression(ExecutableElement propertyElement) {
-    String methodName = propertyElement.getSimpleName().toString();
-    TypeName propertyType = TypeName.get(propertyElement.getReturnType());
-    Set<String> propertyAnnotations = getAnnotations(propertyElement);
-
-    boolean nullable = propertyAnnotations.contains("Nullable");
-
-    if (propertyType.equals(TypeName.FLOAT)) {
-      return CodeBlock.of("(Float.floatToIntBits(this.$N()) == Float.floatToIntBits(that.$N()))",
-          methodName, methodName);
-    } else if (propertyType.equals(TypeName.DOUBLE)) {
-      return CodeBlock.of(
-          "(Double.doubleToLongBits(this.$N()) == Double.doubleToLongBits(that.$N()))", methodName,
-          methodName);
-    } else if (propertyType.isPrimitive()) {
-      return CodeBlock.of("(this.$N() == that.$N())", methodName, methodName);
-    } else if (propertyType instanceof ArrayTypeName) {
-      return CodeBlock.of("($T.equals(this.$N(), that.$N()))", Arrays.class, methodName,
-          methodName);
-    } else {
-      if (nullable) {
-        return CodeBlock.of(
-            "((this.$N() == null) ? (that.$N() == null) : this.$N().equals(that.$N()))", methodName,
-            methodName, methodName, methodName);
-      } else {
-        return CodeBlock.of("(this.$N().equals(that.$N()))", methodName, methodName);
+  private static CodeBlock recordMismatch(int index, boolean recordEqualsProfile,
+                                          boolean compareHashes, boolean instrument) {
+    CodeBlock.Builder builder = CodeBlock.builder();
+    if (recordEqualsProfile) {
+      builder.addStatement("$N.recordMismatch($L)", EQUALS_PROFILE, index);
+    }
+    if (compareHashes) {
+      builder.addStatement("$N.recordUnequal($L, sameHash)", COUNTERS, index);
+    } else if (instrument) {
+      builder.addStatement("$N.recordUnequal($L)", COUNTERS, index);
+    }
+    return builder.build();
+  }
+
+  /**
+   * A {@code static final} field holding the {@code type} instance registered for the class,
+   * with the properties in the order equals() compares them.
+   */
+  private static FieldSpec generateRegisteredField(ClassName type, String name,
+                                                   TypeElement autoValueClass,
+                                                   List<Property> nonIgnoredProperties) {
+    CodeBlock.Builder initializer = CodeBlock.builder()
+        .add("$T.register($S", type, autoValueClass.getQualifiedName().toString());
+    for (Property property : nonIgnoredProperties) {
+      initializer.add(", $S", property.name());
+    }
+    initializer.add(")");
+
+    return FieldSpec.builder(type, name, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+        .initializer(initializer.build())
+        .build();
+  }
+
+  /**
+   * Properties that most often differ in practice go first. Properties with the same count, or
+   * missing from the profile, keep the order they already had.
+   */
+  private static void sortByMismatches(final MismatchProfile mismatchProfile,
+                                       final String className, List<Property> properties) {
+    Collections.sort(properties, new Comparator<Property>() {
+      @Override public int compare(Property left, Property right) {
+        return Long.compare(mismatchProfile.mismatches(className, right.name()),
+            mismatchProfile.mismatches(className, left.name()));
+      }
+    });
+  }
+
+  /**
+   * Returns true if the AutoValue class has an abstract, parameterless {@code methodName}
+   * returning {@code returnKind}, declared or inherited.
+   */
+  private static boolean hasAbstractMethod(Context context, String methodName,
+                                           TypeKind returnKind) {
+    Elements elements = context.processingEnvironment().getElementUtils();
+    for (ExecutableElement method
+        : ElementFilter.methodsIn(elements.getAllMembers(context.autoValueClass()))) {
+      if (method.getSimpleName().contentEquals(methodName)
+          && method.getModifiers().contains(Modifier.ABSTRACT)
+          && method.getParameters().isEmpty()
+          && method.getReturnType().getKind() == returnKind) {
+        return true;
       }
     }
+    return false;
   }
 
-  private static Set<String> getAnnotations(ExecutableElement element) {
-    Set<String> set = new LinkedHashSet<>();
+  /** Returns true if {@code method} is an abstract {@code boolean equalsTyped(Self that)}. */
+  private static boolean isEqualsTyped(Context context, ExecutableElement method) {
+    Types types = context.processingEnvironment().getTypeUtils();
+    return method.getSimpleName().contentEquals(EQUALS_TYPED)
+        && method.getModifiers().contains(Modifier.ABSTRACT)
+        && method.getReturnType().getKind() == TypeKind.BOOLEAN
+        && method.getParameters().size() == 1
+        && types.isSameType(types.erasure(method.getParameters().get(0).asType()),
+            types.erasure(context.autoValueClass().asType()));
+  }
 
-    List<? extends AnnotationMirror> annotations = element.getAnnotationMirrors();
-    for (AnnotationMirror annotation : annotations) {
-      set.add(annotation.getAnnotationType().asElement().getSimpleName().toString());
+  private static ExecutableElement findEqualsTyped(Context context) {
+    Elements elements = context.processingEnvironment().getElementUtils();
+    for (ExecutableElement method
+        : ElementFilter.methodsIn(elements.getAllMembers(context.autoValueClass()))) {
+      if (isEqualsTyped(context, method)) {
+        return method;
+      }
     }
+    return null;
+  }
 
-    return Collections.unmodifiableSet(set);
+  private static boolean isCompareTo(Context context, ExecutableElement method) {
+    return ComparatorGenerator.isCompareTo(context.processingEnvironment().getTypeUtils(),
+        context.autoValueClass(), method);
+  }
+
+  private static ExecutableElement findCompareTo(Context context) {
+    Elements elements = context.processingEnvironment().getElementUtils();
+    for (ExecutableElement method
+        : ElementFilter.methodsIn(elements.getAllMembers(context.autoValueClass()))) {
+      if (isCompareTo(context, method)) {
+        return method;
+      }
+    }
+    return null;
+  }
+
+  private static ExecutableElement findHashInto(Context context) {
+    Elements elements = context.processingEnvironment().getElementUtils();
+    for (ExecutableElement method
+        : ElementFilter.methodsIn(elements.getAllMembers(context.autoValueClass()))) {
+      if (HashIntoGenerator.isHashInto(method)) {
+        return method;
+      }
+    }
+    return null;
+  }
+
+  private static AnnotationMirror getAnnotation(Element element, String annotationName) {
+    for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+      Element annotationElement = annotation.getAnnotationType().asElement();
+      if (annotationElement.getSimpleName().contentEquals(annotationName)) {
+        return annotation;
+      }
+    }
+    return null;
+  }
+
+  private static Object getAnnotationValue(Elements elements, AnnotationMirror annotation,
+                                           String memberName) {
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+        : elements.getElementValuesWithDefaults(annotation).entrySet()) {
+      if (entry.getKey().getSimpleName().contentEquals(memberName)) {
+        return entry.getValue().getValue();
+      }
+    }
+    return null;
   }
 }
@@ -0,0 +1,190 @@
+package com.github.reggar.ignorehashequals;
+
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+
+/**
+ * Generates a static {@code COMPARATOR} ordering by the included properties in declaration order,
+ * for value classes annotated with {@code @HashEqualsComparator}, and {@code compareTo(that)} if
+ * the class implements {@code Comparable} of itself and leaves it abstract.
+ *
+ * <p>The comparator returns 0 exactly when equals() returns true, provided that every property's
+ * own {@code compareTo} is consistent with its {@code equals}. Primitives are compared with the
+ * static {@code compare} methods of their wrapper types, without boxing, floats and doubles by the
+ * same bits equals() looks at, primitive arrays lexicographically, and other properties with
+ * their {@code compareTo}, nulls first. Properties compared by identity have no order consistent
+ * with equals() and are rejected.
+ */
+final class ComparatorGenerator {
+  static final String ANNOTATION_NAME = "HashEqualsComparator";
+  static final String METHOD_NAME = "compareTo";
+
+  private static final String FIELD_NAME = "COMPARATOR";
+  private static final String ARRAY_HELPER_NAME = "compareArrays";
+
+  private final Types types;
+  private final TypeMirror comparable;
+  private final Map<TypeName, MethodSpec> arrayHelpers = new LinkedHashMap<>();
+
+  ComparatorGenerator(ProcessingEnvironment processingEnvironment) {
+    this.types = processingEnvironment.getTypeUtils();
+    this.comparable = types.erasure(processingEnvironment.getElementUtils()
+        .getTypeElement(Comparable.class.getCanonicalName()).asType());
+  }
+
+  /**
+   * Returns true if {@code method} is an abstract {@code compareTo} taking the value class itself,
+   * declared directly or inherited from {@code Comparable<Self>}.
+   */
+  static boolean isCompareTo(Types types, TypeElement autoValueClass, ExecutableElement method) {
+    if (!method.getSimpleName().contentEquals(METHOD_NAME)
+        || !method.getModifiers().contains(Modifier.ABSTRACT)
+        || method.getReturnType().getKind() != TypeKind.INT
+        || method.getParameters().size() != 1) {
+      return false;
+    }
+    ExecutableType resolved =
+        (ExecutableType) types.asMemberOf((DeclaredType) autoValueClass.asType(), method);
+    return types.isSameType(types.erasure(resolved.getParameterTypes().get(0)),
+        types.erasure(autoValueClass.asType()));
+  }
+
+  /**
+   * Returns the {@code COMPARATOR} field, or throws {@link IllegalArgumentException} naming the
+   * first property that has no natural order or is compared by identity.
+   */
+  FieldSpec generate(ClassName valueName, List<Property> properties) {
+    CodeBlock.Builder body = CodeBlock.builder();
+    for (int i = 0; i < properties.size(); i++) {
+      Property property = properties.get(i);
+      CodeBlock comparison = compare(property);
+      if (i == properties.size() - 1) {
+        body.addStatement("return $L", comparison);
+      } else {
+        body.addStatement(i == 0 ? "int c = $L" : "c = $L", comparison)
+            .beginControlFlow("if (c != 0)")
+            .addStatement("return c")
+            .endControlFlow();
+      }
+    }
+    if (properties.isEmpty()) {
+      body.addStatement("return 0");
+    }
+
+    TypeName comparatorName =
+        ParameterizedTypeName.get(ClassName.get(Comparator.class), valueName);
+    TypeSpec comparator = TypeSpec.anonymousClassBuilder("")
+        .addSuperinterface(comparatorName)
+        .addMethod(MethodSpec.methodBuilder("compare")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .returns(TypeName.INT)
+            .addParameter(valueName, "a")
+            .addParameter(valueName, "b")
+            .addCode(body.build())
+            .build())
+        .build();
+
+    return FieldSpec.builder(comparatorName, FIELD_NAME,
+        Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+        .initializer("$L", comparator)
+        .build();
+  }
+
+  /** {@code compareTo(that)}, delegating to {@code COMPARATOR}. */
+  static MethodSpec generateCompareTo(ClassName valueName) {
+    return MethodSpec.methodBuilder(METHOD_NAME)
+        .addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+        .returns(TypeName.INT)
+        .addParameter(valueName, "that")
+        .addStatement("return $N.compare(this, that)", FIELD_NAME)
+        .build();
+  }
+
+  /** The array comparison helpers that {@link #generate} referred to. */
+  Collection<MethodSpec> helpers() {
+    return arrayHelpers.values();
+  }
+
+  private CodeBlock compare(Property property) {
+    String methodName = property.methodName();
+    CodeBlock a = CodeBlock.of("a.$N()", methodName);
+    CodeBlock b = CodeBlock.of("b.$N()", methodName);
+    TypeName typeName = property.typeName();
+
+    if (property.category() == TypeCategory.IDENTITY) {
+      // equals() compares these with ==, and no order over their values can tell two distinct
+      // but equal instances apart, so compareTo could return 0 for values that are not equal.
+      throw new IllegalArgumentException("Property " + property.name()
+          + " is compared by identity, so @" + ANNOTATION_NAME + " cannot order by it.");
+    } else if (typeName.isPrimitive()) {
+      return comparePrimitives(typeName, a, b);
+    } else if (typeName instanceof ArrayTypeName
+        && ((ArrayTypeName) typeName).componentType.isPrimitive()) {
+      return CodeBlock.of("$N($L, $L)", arrayHelper((ArrayTypeName) typeName), a, b);
+    } else if (!types.isAssignable(types.erasure(property.type()), comparable)) {
+      throw new IllegalArgumentException("Property " + property.name() + " of type "
+          + typeName + " is not Comparable, so @" + ANNOTATION_NAME + " cannot order by it.");
+    }
+
+    if (property.nullable()) {
+      return CodeBlock.of(
+          "$L == null ? ($L == null ? 0 : -1) : ($L == null ? 1 : $L.compareTo($L))",
+          a, b, b, a, b);
+    }
+    return CodeBlock.of("$L.compareTo($L)", a, b);
+  }
+
+  private static CodeBlock comparePrimitives(TypeName typeName, CodeBlock a, CodeBlock b) {
+    // Float.compare and Double.compare tell -0.0 from 0.0 and treat all NaNs as equal, just like
+    // the floatToIntBits and doubleToLongBits comparisons in equals().
+    return CodeBlock.of("$T.compare($L, $L)", typeName.box(), a, b);
+  }
+
+  /** A lexicographic comparison of two primitive arrays, shorter prefixes first. */
+  private String arrayHelper(ArrayTypeName arrayType) {
+    MethodSpec helper = arrayHelpers.get(arrayType);
+    if (helper == null) {
+      helper = MethodSpec.methodBuilder(ARRAY_HELPER_NAME)
+          .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+          .returns(TypeName.INT)
+          .addParameter(arrayType, "a")
+          .addParameter(arrayType, "b")
+          .addStatement("int length = Math.min(a.length, b.length)")
+          .beginControlFlow("for (int i = 0; i < length; i++)")
+          .addStatement("int c = $L", comparePrimitives(arrayType.componentType,
+              CodeBlock.of("a[i]"), CodeBlock.of("b[i]")))
+          .beginControlFlow("if (c != 0)")
+          .addStatement("return c")
+          .endControlFlow()
+          .endControlFlow()
+          .addStatement("return Integer.compare(a.length, b.length)")
+          .build();
+      arrayHelpers.put(arrayType, helper);
+    }
+    return helper.name;
+  }
+}
@@ -0,0 +1,55 @@
+package com.github.reggar.ignorehashequals;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The order in which the generated {@code equals()} compares the included properties, selected
+ * with the {@code ignoreHashEquals.equalsOrder} processor option.
+ */
+enum EqualsOrder {
+  /** Cheapest {@link TypeCategory} first, declaration order within a category. The default. */
+  COST("cost"),
+  /** The order the properties are declared in. */
+  DECLARATION("declaration");
+
+  static final String OPTION = "ignoreHashEquals.equalsOrder";
+
+  private final String optionValue;
+
+  EqualsOrder(String optionValue) {
+    this.optionValue = optionValue;
+  }
+
+  /**
+   * Sorts {@code properties} into this order. Most calls to equals() on distinct instances return
+   * false, so comparing the cheapest properties first lets the && chain short-circuit before
+   * touching strings, arrays or collections. The sort is stable, keeping declaration order within
+   * a category.
+   */
+  public void sort(List<Property> properties) {
+    if (this == COST) {
+      Collections.sort(properties, new Comparator<Property>() {
+        @Override public int compare(Property left, Property right) {
+          return Integer.compare(left.category().equalsCost(), right.category().equalsCost());
+        }
+      });
+    }
+  }
+
+  public static EqualsOrder from(String optionValue) {
+    if (optionValue == null) {
+      return COST;
+    }
+
+    for (EqualsOrder equalsOrder : values()) {
+      if (equalsOrder.optionValue.equals(optionValue)) {
+        return equalsOrder;
+      }
+    }
+
+    throw new RuntimeException("Unknown value '" + optionValue + "' for " + OPTION
+        + ", expected 'cost' or 'declaration'.");
+  }
+}
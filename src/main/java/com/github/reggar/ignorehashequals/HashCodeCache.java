@@ -0,0 +1,31 @@
+package com.github.reggar.ignorehashequals;
+
+/**
+ * How the generated class stores its hash code, selected by a class level {@code @CacheHashCode}
+ * annotation.
+ */
+enum HashCodeCache {
+  /** No {@code @CacheHashCode}: the hash code is recomputed on every call. */
+  NONE,
+  /**
+   * {@code @CacheHashCode}: computed on first use and stored in a plain field. Races only ever
+   * recompute the same value, the same way {@link String#hashCode()} does.
+   */
+  LAZY,
+  /** {@code @CacheHashCode(eager = true)}: computed once in the constructor. */
+  EAGER;
+
+  static final String ANNOTATION_NAME = "CacheHashCode";
+  static final String EAGER_MEMBER = "eager";
+
+  public boolean isCached() {
+    return this != NONE;
+  }
+
+  public static HashCodeCache from(boolean present, boolean eager) {
+    if (!present) {
+      return NONE;
+    }
+    return eager ? EAGER : LAZY;
+  }
+}
@@ -0,0 +1,268 @@
+package com.github.reggar.ignorehashequals;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.WildcardTypeName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+
+/**
+ * Static {@code equals(a, b)} and {@code hashCode(value)} methods over a list of properties, for
+ * the helpers of {@link HashEqualsProcessor} and for the equality groups that properties join with
+ * {@code @HashEqualsGroup("name")}.
+ *
+ * <p>A group gets {@code nameEquals(a, b)} and {@code nameHashCode(value)} over its members, and a
+ * stateless {@code NameHashingStrategy} delegating to them, so that one value can be looked up by
+ * different subsets of its properties in different hash containers without a key object per
+ * lookup.
+ */
+final class HashEqualsMethods {
+  static final String GROUP_ANNOTATION_NAME = "HashEqualsGroup";
+
+  private static final String HASHING_STRATEGY = "HashingStrategy";
+
+  private static final ClassName FASTUTIL_STRATEGY =
+      ClassName.get("it.unimi.dsi.fastutil", "Hash", "Strategy");
+  private static final ClassName ECLIPSE_COLLECTIONS_STRATEGY =
+      ClassName.get("org.eclipse.collections.api.block", "HashingStrategy");
+
+  private HashEqualsMethods() {
+  }
+
+  /**
+   * A static {@code methodName(a, b)} comparing {@code properties} in the given order, true for
+   * two nulls and false for one.
+   */
+  static MethodSpec generateEquals(String methodName, TypeName typeName,
+                                   List<Property> properties, SourceVersion sourceVersion) {
+    MethodSpec.Builder builder = MethodSpec.methodBuilder(methodName)
+        .addModifiers(Modifier.STATIC)
+        .returns(TypeName.BOOLEAN)
+        .addParameter(typeName, "a")
+        .addParameter(typeName, "b")
+        .beginControlFlow("if (a == b)")
+        .addStatement("return true")
+        .endControlFlow()
+        .beginControlFlow("if (a == null || b == null)")
+        .addStatement("return false")
+        .endControlFlow();
+    if (properties.isEmpty()) {
+      builder.addStatement("return true");
+    } else {
+      PropertyExpressions parameters = new PropertyExpressions("a", "b", sourceVersion);
+      builder.addCode("return $>$>$L$<$<;\n", parameters.conjunction(properties));
+    }
+    return builder.build();
+  }
+
+  /** A static {@code methodName(value)} hashing {@code properties}, 0 for null. */
+  static MethodSpec generateHashCode(String methodName, TypeName typeName,
+                                     List<Property> properties, HashStrategy hashStrategy,
+                                     SourceVersion sourceVersion) {
+    PropertyExpressions value = new PropertyExpressions("value", "value", sourceVersion);
+    CodeBlock.Builder body = CodeBlock.builder()
+        .beginControlFlow("if (value == null)")
+        .addStatement("return 0")
+        .endControlFlow()
+        .add(hashStrategy.initialize(properties.size()));
+    for (Property property : properties) {
+      body.add(hashStrategy.mix(value.hashCode(property)));
+    }
+    body.add(hashStrategy.finish(properties.size()))
+        .addStatement("return h");
+
+    return MethodSpec.methodBuilder(methodName)
+        .addModifiers(Modifier.STATIC)
+        .returns(TypeName.INT)
+        .addParameter(typeName, "value")
+        .addCode(body.build())
+        .build();
+  }
+
+  /** True if any of {@code properties} is in a group. */
+  static boolean hasGroups(List<Property> properties) {
+    for (Property property : properties) {
+      if (property.annotations().contains(GROUP_ANNOTATION_NAME)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The groups named by {@code @HashEqualsGroup} on {@code properties}, in order of first use,
+   * each with its members in declaration order. The annotation's value may be a single name or an
+   * array of them. Throws {@link IllegalArgumentException} for a name that is not a Java
+   * identifier.
+   */
+  static Map<String, List<Property>> getGroups(Elements elements, List<Property> properties) {
+    Map<String, List<Property>> groups = new LinkedHashMap<>();
+    for (Property property : properties) {
+      if (!property.annotations().contains(GROUP_ANNOTATION_NAME)) {
+        continue;
+      }
+      for (String group : getGroupNames(elements, property)) {
+        if (!SourceVersion.isIdentifier(group)) {
+          throw new IllegalArgumentException("Property " + property.name() + " is in group \""
+              + group + "\", which is not a valid Java identifier.");
+        }
+        List<Property> members = groups.get(group);
+        if (members == null) {
+          members = new ArrayList<>();
+          groups.put(group, members);
+        }
+        if (!members.contains(property)) {
+          members.add(property);
+        }
+      }
+    }
+    return groups;
+  }
+
+  private static List<String> getGroupNames(Elements elements, Property property) {
+    for (AnnotationMirror annotation : property.element().getAnnotationMirrors()) {
+      if (!annotation.getAnnotationType().asElement().getSimpleName()
+          .contentEquals(GROUP_ANNOTATION_NAME)) {
+        continue;
+      }
+      for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+          : elements.getElementValuesWithDefaults(annotation).entrySet()) {
+        if (!entry.getKey().getSimpleName().contentEquals("value")) {
+          continue;
+        }
+        Object value = entry.getValue().getValue();
+        if (!(value instanceof List)) {
+          return Collections.singletonList(value.toString());
+        }
+        List<String> names = new ArrayList<>();
+        for (Object element : (List<?>) value) {
+          names.add(((AnnotationValue) element).getValue().toString());
+        }
+        return names;
+      }
+    }
+    return Collections.emptyList();
+  }
+
+  /** {@code cacheKeyEquals} for the group {@code cacheKey}. */
+  static String equalsName(String group) {
+    return group + "Equals";
+  }
+
+  /** {@code cacheKeyHashCode} for the group {@code cacheKey}. */
+  static String hashCodeName(String group) {
+    return group + "HashCode";
+  }
+
+  /**
+   * The {@code CacheKeyHashingStrategy} singleton for the group {@code cacheKey}, nested in
+   * {@code enclosingName}, with the same shape and interfaces as the class's own
+   * {@code HashingStrategy}.
+   */
+  static TypeSpec generateHashingStrategy(Elements elements, ClassName enclosingName,
+                                          String group, TypeName typeName) {
+    String name = Character.toUpperCase(group.charAt(0)) + group.substring(1) + HASHING_STRATEGY;
+    return generateHashingStrategy(elements, enclosingName.nestedClass(name), typeName,
+        CodeBlock.of("$N(a, b)", equalsName(group)),
+        CodeBlock.of("$N(value)", hashCodeName(group)));
+  }
+
+  /**
+   * A public stateless {@code strategyName} singleton whose {@code equals(a, b)} and
+   * {@code hashCode(value)} return {@code equals} and {@code hashCode}. It implements fastutil's
+   * {@code Hash.Strategy} and Eclipse Collections' {@code HashingStrategy}, whichever of them is on
+   * the compile classpath, so that their hash containers take {@code INSTANCE} directly.
+   */
+  static TypeSpec generateHashingStrategy(Elements elements, ClassName strategyName,
+                                          TypeName typeName, CodeBlock equals,
+                                          CodeBlock hashCode) {
+    boolean fastutil = isOnClasspath(elements, FASTUTIL_STRATEGY);
+    boolean eclipseCollections = isOnClasspath(elements, ECLIPSE_COLLECTIONS_STRATEGY);
+
+    TypeSpec.Builder strategy = TypeSpec.classBuilder(strategyName)
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+        .addField(FieldSpec.builder(strategyName, "INSTANCE",
+            Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+            .initializer("new $T()", strategyName)
+            .build())
+        .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build());
+    if (fastutil) {
+      strategy.addSuperinterface(ParameterizedTypeName.get(FASTUTIL_STRATEGY, typeName));
+    }
+    if (eclipseCollections) {
+      strategy.addSuperinterface(
+          ParameterizedTypeName.get(ECLIPSE_COLLECTIONS_STRATEGY, typeName));
+    }
+
+    MethodSpec.Builder equalsMethod = MethodSpec.methodBuilder("equals")
+        .addModifiers(Modifier.PUBLIC)
+        .returns(TypeName.BOOLEAN)
+        .addParameter(typeName, "a")
+        .addParameter(typeName, "b")
+        .addStatement("return $L", equals);
+    if (fastutil || eclipseCollections) {
+      equalsMethod.addAnnotation(Override.class);
+    }
+    MethodSpec.Builder hashCodeMethod = MethodSpec.methodBuilder("hashCode")
+        .addModifiers(Modifier.PUBLIC)
+        .returns(TypeName.INT)
+        .addParameter(typeName, "value")
+        .addStatement("return $L", hashCode);
+    if (fastutil) {
+      hashCodeMethod.addAnnotation(Override.class);
+    }
+    strategy.addMethod(equalsMethod.build())
+        .addMethod(hashCodeMethod.build());
+
+    if (eclipseCollections) {
+      // Eclipse Collections names the hash method computeHashCode, and its strategies are
+      // Serializable, so the singleton resolves back to INSTANCE.
+      strategy.addMethod(MethodSpec.methodBuilder("computeHashCode")
+          .addAnnotation(Override.class)
+          .addModifiers(Modifier.PUBLIC)
+          .returns(TypeName.INT)
+          .addParameter(typeName, "value")
+          .addStatement("return hashCode(value)")
+          .build())
+          .addMethod(MethodSpec.methodBuilder("readResolve")
+              .addModifiers(Modifier.PRIVATE)
+              .returns(Object.class)
+              .addStatement("return INSTANCE")
+              .build());
+    }
+    return strategy.build();
+  }
+
+  private static boolean isOnClasspath(Elements elements, ClassName className) {
+    return elements.getTypeElement(className.toString()) != null;
+  }
+
+  /** The type with wildcards for any type parameters. */
+  static TypeName wildcardTypeName(TypeElement type) {
+    ClassName className = ClassName.get(type);
+    if (type.getTypeParameters().isEmpty()) {
+      return className;
+    }
+    TypeName[] arguments = new TypeName[type.getTypeParameters().size()];
+    Arrays.fill(arguments, WildcardTypeName.subtypeOf(Object.class));
+    return ParameterizedTypeName.get(className, arguments);
+  }
+}
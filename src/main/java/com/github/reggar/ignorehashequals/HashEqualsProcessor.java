@@ -0,0 +1,258 @@
+package com.github.reggar.ignorehashequals;
+
+import com.google.auto.service.AutoService;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates {@code equals} and {@code hashCode} helpers for records and hand-written classes
+ * annotated with {@code @GenerateHashEquals}, outside of AutoValue. For a type {@code Point} it
+ * writes {@code PointHashEquals} with {@code static boolean equals(Point a, Point b)} and
+ * {@code static int hashCode(Point value)}, built from the same property expressions, equals order
+ * and hash strategies as the extension, so neither allocates.
+ *
+ * <p>The properties of a record are its components. The properties of a class are its instance
+ * fields, read through an accessor named like the field, or {@code getX()}/{@code isX()}; an
+ * included field without one is an error. {@code @IgnoreHashEquals}, {@code @IncludeHashEquals}
+ * and {@code @Nullable} count on the component or field as well as on the accessor. Nothing
+ * stops these fields from being null, so every reference property is compared and hashed
+ * null-safely unless it is annotated {@code @Nonnull}, {@code @NonNull} or {@code @NotNull}.
+ *
+ * <p>Each helper is generated from its own type alone, with that type as its originating element,
+ * so the processor is registered with Gradle as isolating, like the extension, and keeps builds
+ * incremental even though it has to look at every type.
+ */
+@AutoService(Processor.class) public final class HashEqualsProcessor extends AbstractProcessor {
+  static final String ANNOTATION_NAME = "GenerateHashEquals";
+  static final String SUFFIX = "HashEquals";
+
+  /** The annotation is matched by simple name, so every type has to be looked at. */
+  @Override public Set<String> getSupportedAnnotationTypes() {
+    return Collections.singleton("*");
+  }
+
+  /**
+   * The options of this processor and of the AutoValue extension, which has no way to declare its
+   * own. Both ship in the same jar, so declaring them here keeps javac from warning that they were
+   * not recognized, which fails {@code -Werror} builds.
+   */
+  @Override public Set<String> getSupportedOptions() {
+    return new LinkedHashSet<>(Arrays.asList(EqualsOrder.OPTION, HashStrategy.OPTION,
+        MismatchProfile.OPTION, MismatchProfile.RECORD_OPTION, ProcessingStats.OPTION,
+        AutoValueIgnoreHashEqualsExtension.INSTRUMENT_OPTION));
+  }
+
+  @Override public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override public boolean process(Set<? extends TypeElement> annotations,
+                                   RoundEnvironment roundEnvironment) {
+    for (TypeElement type : ElementFilter.typesIn(roundEnvironment.getRootElements())) {
+      processType(type);
+    }
+    // Claim nothing, other processors may be interested in the same types.
+    return false;
+  }
+
+  private void processType(TypeElement type) {
+    if (ValueClass.getAnnotations(type).contains(ANNOTATION_NAME)) {
+      try {
+        generate(type);
+      } catch (RuntimeException e) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), type);
+      }
+    }
+    for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+      processType(nested);
+    }
+  }
+
+  private void generate(TypeElement type) {
+    if ((type.getKind() != ElementKind.CLASS && !isRecord(type))
+        || type.getModifiers().contains(Modifier.PRIVATE)
+        || (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC)
+            && !isRecord(type))) {
+      throw new IllegalArgumentException("@" + ANNOTATION_NAME
+          + " applies to records and to top level or static nested classes that are not private.");
+    }
+
+    Map<String, ExecutableElement> accessors = new LinkedHashMap<>();
+    Map<String, Set<String>> annotations = new LinkedHashMap<>();
+    if (isRecord(type)) {
+      collectRecordComponents(type, accessors, annotations);
+    } else if (!collectFields(type, accessors, annotations)) {
+      return;
+    }
+
+    ValueClass valueClass = ValueClass.analyze(processingEnv, type, accessors,
+        Collections.<String>emptySet(), annotations, true);
+    List<Property> equalsProperties = new ArrayList<>(valueClass.includedProperties());
+    EqualsOrder.from(processingEnv.getOptions().get(EqualsOrder.OPTION)).sort(equalsProperties);
+    HashStrategy hashStrategy =
+        AutoValueIgnoreHashEqualsExtension.getHashStrategy(processingEnv, type);
+
+    TypeName typeName = HashEqualsMethods.wildcardTypeName(type);
+    MethodSpec equals = HashEqualsMethods.generateEquals("equals", typeName, equalsProperties,
+        processingEnv.getSourceVersion());
+    MethodSpec hashCode = HashEqualsMethods.generateHashCode("hashCode", typeName,
+        valueClass.includedProperties(), hashStrategy, processingEnv.getSourceVersion());
+    TypeSpec.Builder helper = TypeSpec.classBuilder(helperName(type))
+        .addOriginatingElement(type)
+        .addModifiers(Modifier.FINAL)
+        .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build());
+    if (type.getModifiers().contains(Modifier.PUBLIC)) {
+      helper.addModifiers(Modifier.PUBLIC);
+      equals = equals.toBuilder().addModifiers(Modifier.PUBLIC).build();
+      hashCode = hashCode.toBuilder().addModifiers(Modifier.PUBLIC).build();
+    }
+    helper.addMethod(equals)
+        .addMethod(hashCode)
+        .addMethods(PropertyExpressions.helpers(valueClass.includedProperties()));
+
+    String packageName =
+        processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+    try {
+      JavaFile.builder(packageName, helper.build()).build().writeTo(processingEnv.getFiler());
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+          "Could not write " + helperName(type) + ": " + e.getMessage(), type);
+    }
+  }
+
+  /** Record components, read through their accessors. */
+  private static void collectRecordComponents(TypeElement type,
+                                              Map<String, ExecutableElement> accessors,
+                                              Map<String, Set<String>> annotations) {
+    for (Element component : type.getEnclosedElements()) {
+      if (!component.getKind().name().equals("RECORD_COMPONENT")) {
+        continue;
+      }
+      String name = component.getSimpleName().toString();
+      ExecutableElement accessor = findAccessor(type, name);
+      accessors.put(name, accessor);
+      annotations.put(name, union(component, accessor, findField(type, name)));
+    }
+  }
+
+  /**
+   * Instance fields, read through their accessors. Returns false after reporting an error if an
+   * included field has no accessor.
+   */
+  private boolean collectFields(TypeElement type, Map<String, ExecutableElement> accessors,
+                                Map<String, Set<String>> annotations) {
+    Map<VariableElement, Set<String>> withoutAccessor = new LinkedHashMap<>();
+    AnnotationType annotationType = AnnotationType.NOT_PRESENT;
+    for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+      if (field.getModifiers().contains(Modifier.STATIC)) {
+        continue;
+      }
+      String name = field.getSimpleName().toString();
+      ExecutableElement accessor = findAccessor(type, name);
+      if (accessor == null) {
+        String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        accessor = findAccessor(type, "get" + capitalized);
+        if (accessor == null && field.asType().getKind() == TypeKind.BOOLEAN) {
+          accessor = findAccessor(type, "is" + capitalized);
+        }
+      }
+
+      Set<String> fieldAnnotations = union(field, accessor, null);
+      if (annotationType == AnnotationType.NOT_PRESENT) {
+        annotationType = AnnotationType.from(fieldAnnotations);
+      }
+      if (accessor == null) {
+        withoutAccessor.put(field, fieldAnnotations);
+      } else {
+        accessors.put(name, accessor);
+        annotations.put(name, fieldAnnotations);
+      }
+    }
+
+    boolean complete = true;
+    for (Map.Entry<VariableElement, Set<String>> entry : withoutAccessor.entrySet()) {
+      if (annotationType.shouldBeIncluded(entry.getValue())) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Field "
+            + entry.getKey().getSimpleName() + " has no accessor for " + helperName(type)
+            + " to read it through. Add one or annotate the field with @IgnoreHashEquals.",
+            entry.getKey());
+        complete = false;
+      }
+    }
+    return complete;
+  }
+
+  /** A parameterless, non-private, non-static method named {@code name}, or null. */
+  private static ExecutableElement findAccessor(TypeElement type, String name) {
+    for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+      if (method.getSimpleName().contentEquals(name)
+          && method.getParameters().isEmpty()
+          && method.getReturnType().getKind() != TypeKind.VOID
+          && !method.getModifiers().contains(Modifier.PRIVATE)
+          && !method.getModifiers().contains(Modifier.STATIC)) {
+        return method;
+      }
+    }
+    return null;
+  }
+
+  private static VariableElement findField(TypeElement type, String name) {
+    for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+      if (field.getSimpleName().contentEquals(name)) {
+        return field;
+      }
+    }
+    return null;
+  }
+
+  private static Set<String> union(Element first, Element second, Element third) {
+    Set<String> annotations = new LinkedHashSet<>();
+    for (Element element : Arrays.asList(first, second, third)) {
+      if (element != null) {
+        annotations.addAll(ValueClass.getAnnotations(element));
+      }
+    }
+    return Collections.unmodifiableSet(annotations);
+  }
+
+  /** Records are only known to the compiler from Java 16 on, so they are recognized by name. */
+  private static boolean isRecord(TypeElement type) {
+    return type.getKind().name().equals("RECORD");
+  }
+
+  /** {@code PointHashEquals} for {@code Point}, {@code Outer_InnerHashEquals} when nested. */
+  private static String helperName(TypeElement type) {
+    String name = type.getSimpleName().toString();
+    for (Element enclosing = type.getEnclosingElement(); enclosing instanceof TypeElement;
+        enclosing = enclosing.getEnclosingElement()) {
+      name = enclosing.getSimpleName() + "_" + name;
+    }
+    return name + SUFFIX;
+  }
+}
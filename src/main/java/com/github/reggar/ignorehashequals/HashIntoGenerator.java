@@ -0,0 +1,187 @@
+package com.github.reggar.ignorehashequals;
+
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.TypeName;
+
+import java.util.List;
+import java.util.Locale;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * Generates {@code void hashInto(S sink)} over the included properties, for value classes that
+ * declare it as an abstract method. The sink is any type with Guava {@code PrimitiveSink} style
+ * {@code put} methods, usually {@code PrimitiveSink} itself.
+ *
+ * <p>Every value is written with the {@code put} method for its primitive type, so nothing is
+ * boxed or copied: strings and primitive arrays are written as their length followed by their
+ * elements, enums as their ordinal, nullable properties are preceded by a presence flag, nested
+ * values that declare the same {@code hashInto} write themselves, and other objects fall back to
+ * {@code putInt(hashCode())}.
+ */
+final class HashIntoGenerator {
+  static final String METHOD_NAME = "hashInto";
+
+  private final Types types;
+  private final Elements elements;
+  private final ExecutableElement method;
+  private final TypeMirror sinkType;
+  private final String sink;
+
+  HashIntoGenerator(ProcessingEnvironment processingEnvironment, ExecutableElement method) {
+    this.types = processingEnvironment.getTypeUtils();
+    this.elements = processingEnvironment.getElementUtils();
+    this.method = method;
+    VariableElement parameter = method.getParameters().get(0);
+    this.sinkType = parameter.asType();
+    this.sink = parameter.getSimpleName().toString();
+  }
+
+  /** Returns true if {@code method} is an abstract {@code void hashInto(S sink)} to implement. */
+  static boolean isHashInto(ExecutableElement method) {
+    return method.getSimpleName().contentEquals(METHOD_NAME)
+        && method.getModifiers().contains(Modifier.ABSTRACT)
+        && method.getReturnType().getKind() == TypeKind.VOID
+        && method.getParameters().size() == 1
+        && method.getParameters().get(0).asType().getKind() == TypeKind.DECLARED;
+  }
+
+  /**
+   * Returns the implementation of {@code hashInto}, or throws {@link IllegalArgumentException} if
+   * the sink lacks a {@code put} method that one of the properties needs.
+   */
+  MethodSpec generate(List<Property> properties) {
+    CodeBlock.Builder body = CodeBlock.builder();
+    for (Property property : properties) {
+      CodeBlock value = CodeBlock.of("this.$N()", property.methodName());
+      CodeBlock put = put(property.type(), value);
+
+      if (property.nullable()) {
+        body.beginControlFlow("if ($L == null)", value)
+            .addStatement("$N.$N(false)", sink, sinkMethod("putBoolean"))
+            .nextControlFlow("else")
+            .addStatement("$N.$N(true)", sink, sinkMethod("putBoolean"))
+            .add(put)
+            .endControlFlow();
+      } else {
+        body.add(put);
+      }
+    }
+
+    return MethodSpec.methodBuilder(METHOD_NAME)
+        .addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+        .addParameter(ParameterSpec.builder(TypeName.get(sinkType), sink).build())
+        .addCode(body.build())
+        .build();
+  }
+
+  /** Returns the statements writing {@code value} of type {@code type} into the sink. */
+  private CodeBlock put(TypeMirror type, CodeBlock value) {
+    switch (type.getKind()) {
+      case BOOLEAN:
+      case BYTE:
+      case SHORT:
+      case CHAR:
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+        return putStatement(primitivePut(type), value);
+      case ARRAY:
+        return putArray((ArrayType) type, value);
+      case DECLARED:
+        return putDeclared(type, value);
+      default:
+        return putStatement("putInt", CodeBlock.of("$L.hashCode()", value));
+    }
+  }
+
+  private CodeBlock putArray(ArrayType type, CodeBlock value) {
+    TypeMirror componentType = type.getComponentType();
+    CodeBlock.Builder block = putStatement("putInt", CodeBlock.of("$L.length", value)).toBuilder();
+    if (componentType.getKind() == TypeKind.BYTE) {
+      return block.add(putStatement("putBytes", value)).build();
+    }
+    return block.beginControlFlow("for ($T element : $L)", TypeName.get(componentType), value)
+        .add(put(componentType, CodeBlock.of("element")))
+        .endControlFlow()
+        .build();
+  }
+
+  private CodeBlock putDeclared(TypeMirror type, CodeBlock value) {
+    Element element = types.asElement(type);
+    if (TypeName.get(type).isBoxedPrimitive()) {
+      return putStatement(primitivePut(types.unboxedType(type)), value);
+    } else if (element.getKind() == ElementKind.ENUM) {
+      return putStatement("putInt", CodeBlock.of("$L.ordinal()", value));
+    } else if (isCharSequence(type)) {
+      return CodeBlock.builder()
+          .add(putStatement("putInt", CodeBlock.of("$L.length()", value)))
+          .add(putStatement("putUnencodedChars", value))
+          .build();
+    } else if (declaresHashInto((TypeElement) element)) {
+      return CodeBlock.builder().addStatement("$L.$N($N)", value, METHOD_NAME, sink).build();
+    } else {
+      return putStatement("putInt", CodeBlock.of("$L.hashCode()", value));
+    }
+  }
+
+  private CodeBlock putStatement(String putMethod, CodeBlock value) {
+    return CodeBlock.builder()
+        .addStatement("$N.$N($L)", sink, sinkMethod(putMethod), value)
+        .build();
+  }
+
+  private static String primitivePut(TypeMirror type) {
+    String name = type.getKind().name();
+    return "put" + name.charAt(0) + name.substring(1).toLowerCase(Locale.ROOT);
+  }
+
+  /** Returns {@code name} after checking that the sink declares or inherits such a method. */
+  private String sinkMethod(String name) {
+    TypeElement sinkElement = (TypeElement) types.asElement(sinkType);
+    for (ExecutableElement sinkMethod
+        : ElementFilter.methodsIn(elements.getAllMembers(sinkElement))) {
+      if (sinkMethod.getSimpleName().contentEquals(name)
+          && sinkMethod.getParameters().size() == 1) {
+        return name;
+      }
+    }
+    throw new IllegalArgumentException(method.getEnclosingElement().getSimpleName() + "." + METHOD_NAME
+        + "(" + sinkElement.getSimpleName() + ") needs " + sinkElement.getSimpleName()
+        + " to have a " + name + " method.");
+  }
+
+  private boolean isCharSequence(TypeMirror type) {
+    TypeElement charSequence = elements.getTypeElement("java.lang.CharSequence");
+    return types.isAssignable(types.erasure(type), charSequence.asType());
+  }
+
+  private boolean declaresHashInto(TypeElement typeElement) {
+    for (ExecutableElement candidate
+        : ElementFilter.methodsIn(elements.getAllMembers(typeElement))) {
+      if (candidate.getSimpleName().contentEquals(METHOD_NAME)
+          && candidate.getParameters().size() == 1
+          && types.isSameType(candidate.getParameters().get(0).asType(), sinkType)
+          && !candidate.getModifiers().contains(Modifier.PRIVATE)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,112 @@
+package com.github.reggar.ignorehashequals;
+
+import com.squareup.javapoet.CodeBlock;
+
+/**
+ * How the generated {@code hashCode()} combines the hashes of the included properties, selected
+ * with a class level {@code @HashStrategy} annotation or the {@code ignoreHashEquals.hashStrategy}
+ * processor option.
+ *
+ * <p>Every strategy generates code over a local {@code int h}: {@link #initialize} declares it,
+ * {@link #mix} folds in the int hash of one property, and {@link #finish} runs once after the
+ * last property.
+ */
+enum HashStrategy {
+  /** The {@code h *= 1000003; h ^= x} combiner used by AutoValue itself. The default. */
+  AUTO_VALUE {
+    @Override CodeBlock initialize(int count) {
+      return CodeBlock.builder().addStatement("int h = 1").build();
+    }
+
+    @Override CodeBlock mix(CodeBlock element) {
+      return CodeBlock.builder()
+          .addStatement("h *= 1000003")
+          .addStatement("h ^= $L", element)
+          .build();
+    }
+
+    @Override CodeBlock finish(int count) {
+      return CodeBlock.builder().build();
+    }
+  },
+
+  /** MurmurHash3 (x86, 32-bit) over one 4 byte block per property, with its finalizer. */
+  MURMUR3 {
+    @Override CodeBlock initialize(int count) {
+      return CodeBlock.builder().addStatement("int h = 0").build();
+    }
+
+    @Override CodeBlock mix(CodeBlock element) {
+      return CodeBlock.builder()
+          .addStatement("h ^= Integer.rotateLeft((int) ($L) * 0xcc9e2d51, 15) * 0x1b873593",
+              element)
+          .addStatement("h = Integer.rotateLeft(h, 13) * 5 + 0xe6546b64")
+          .build();
+    }
+
+    @Override CodeBlock finish(int count) {
+      return CodeBlock.builder()
+          .addStatement("h ^= $L", count * 4)
+          .addStatement("h ^= h >>> 16")
+          .addStatement("h *= 0x85ebca6b")
+          .addStatement("h ^= h >>> 13")
+          .addStatement("h *= 0xc2b2ae35")
+          .addStatement("h ^= h >>> 16")
+          .build();
+    }
+  },
+
+  /** xxHash32 over one 4 byte lane per property, with its final avalanche. */
+  XXHASH {
+    @Override CodeBlock initialize(int count) {
+      return CodeBlock.builder().addStatement("int h = 0x165667b1 + $L", count * 4).build();
+    }
+
+    @Override CodeBlock mix(CodeBlock element) {
+      return CodeBlock.builder()
+          .addStatement("h += (int) ($L) * 0xc2b2ae3d", element)
+          .addStatement("h = Integer.rotateLeft(h, 17) * 0x27d4eb2f")
+          .build();
+    }
+
+    @Override CodeBlock finish(int count) {
+      return CodeBlock.builder()
+          .addStatement("h ^= h >>> 15")
+          .addStatement("h *= 0x85ebca77")
+          .addStatement("h ^= h >>> 13")
+          .addStatement("h *= 0xc2b2ae3d")
+          .addStatement("h ^= h >>> 16")
+          .build();
+    }
+  };
+
+  static final String ANNOTATION_NAME = "HashStrategy";
+  static final String OPTION = "ignoreHashEquals.hashStrategy";
+
+  /** Declares {@code h} for hashing {@code count} properties. */
+  abstract CodeBlock initialize(int count);
+
+  /** Folds the hash of one property, an int or long expression, into {@code h}. */
+  abstract CodeBlock mix(CodeBlock element);
+
+  /** Finishes {@code h} after {@code count} properties have been mixed in. */
+  abstract CodeBlock finish(int count);
+
+  /**
+   * Returns the strategy named {@code name}, ignoring case, or {@link #AUTO_VALUE} if it is null.
+   */
+  public static HashStrategy from(String name) {
+    if (name == null) {
+      return AUTO_VALUE;
+    }
+
+    for (HashStrategy hashStrategy : values()) {
+      if (hashStrategy.name().equalsIgnoreCase(name)) {
+        return hashStrategy;
+      }
+    }
+
+    throw new RuntimeException("Unknown hash strategy '" + name
+        + "', expected one of AUTO_VALUE, MURMUR3 or XXHASH.");
+  }
+}
@@ -0,0 +1,304 @@
+package com.github.reggar.ignorehashequals;
+
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.TypeName;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * Generates {@code long longHashCode()} over the included properties, for value classes that
+ * declare it as an abstract method.
+ *
+ * <p>Each property is reduced to a 64-bit value without going through {@code hashCode()} where
+ * possible: primitives are widened, floats and doubles use their raw bits, strings, arrays, lists
+ * and sets are hashed element by element, and nested values that declare {@code longHashCode()}
+ * are asked for theirs. Other objects fall back to {@code hashCode()}, which {@link #narrows}
+ * tells the caller about. The values are combined with
+ * {@code h = rotateLeft((h ^ v) * 0x9e3779b97f4a7c15L, 31)}, starting from 0 for a class and from
+ * the length or size for a sequence, and the class hash ends with the MurmurHash3 fmix64
+ * finalizer. Set elements are mixed on their own and summed, so that the hash does not depend on
+ * the iteration order.
+ */
+final class LongHashCodeGenerator {
+  static final String METHOD_NAME = "longHashCode";
+
+  private static final String HELPER_NAME = "longHash";
+  private static final String STEP = "h = Long.rotateLeft((h ^ $L) * 0x9e3779b97f4a7c15L, 31)";
+
+  private final Types types;
+  private final Elements elements;
+  private final Map<TypeName, MethodSpec> helpers = new LinkedHashMap<>();
+  private final Map<TypeName, String> helperNames = new LinkedHashMap<>();
+  /** How many helpers take each erased parameter type, to keep overloads apart. */
+  private final Map<TypeName, Integer> erasureCounts = new LinkedHashMap<>();
+
+  LongHashCodeGenerator(ProcessingEnvironment processingEnvironment) {
+    this.types = processingEnvironment.getTypeUtils();
+    this.elements = processingEnvironment.getElementUtils();
+  }
+
+  /** Returns true if {@code property} is an abstract {@code long longHashCode()} to implement. */
+  static boolean isLongHashCode(String property, ExecutableElement propertyElement) {
+    return property.equals(METHOD_NAME)
+        && propertyElement.getSimpleName().contentEquals(METHOD_NAME)
+        && propertyElement.getReturnType().getKind() == TypeKind.LONG;
+  }
+
+  MethodSpec generate(List<Property> properties) {
+    CodeBlock.Builder body = CodeBlock.builder()
+        .addStatement("long h = 0");
+    for (Property property : properties) {
+      CodeBlock value = CodeBlock.of("this.$N()", property.methodName());
+      body.addStatement(STEP, valueOf(property.type(), value, property.nullable()));
+    }
+    body.addStatement("h ^= $L", properties.size())
+        .addStatement("h ^= h >>> 33")
+        .addStatement("h *= 0xff51afd7ed558ccdL")
+        .addStatement("h ^= h >>> 33")
+        .addStatement("h *= 0xc4ceb9fe1a85ec53L")
+        .addStatement("h ^= h >>> 33")
+        .addStatement("return h");
+
+    return MethodSpec.methodBuilder(METHOD_NAME)
+        .addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+        .returns(TypeName.LONG)
+        .addCode(body.build())
+        .build();
+  }
+
+  /** The private static helpers that the generated methods call, one per hashed sequence type. */
+  Collection<MethodSpec> helpers() {
+    return new ArrayList<>(helpers.values());
+  }
+
+  /**
+   * Returns true if hashing a value of {@code type}, or an element of it, falls back to its 32-bit
+   * {@code hashCode()}, so that its contribution to {@code longHashCode()} has only 32 bits.
+   */
+  boolean narrows(TypeMirror type) {
+    switch (type.getKind()) {
+      case BOOLEAN:
+      case BYTE:
+      case SHORT:
+      case CHAR:
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+        return false;
+      case ARRAY:
+        return narrows(((ArrayType) type).getComponentType());
+      case DECLARED:
+        Element element = types.asElement(type);
+        if (TypeName.get(type).isBoxedPrimitive() || element.getKind() == ElementKind.ENUM
+            || isCharSequence(type) || declaresLongHashCode((TypeElement) element)) {
+          return false;
+        }
+        TypeElement sequence = sequenceType(type);
+        return sequence == null || narrows(elementType(type, sequence));
+      default:
+        return true;
+    }
+  }
+
+  /** Returns a long (or narrower) expression hashing {@code value} of type {@code type}. */
+  private CodeBlock valueOf(TypeMirror type, CodeBlock value, boolean nullable) {
+    switch (type.getKind()) {
+      case BOOLEAN:
+        return CodeBlock.of("($L ? 1231 : 1237)", value);
+      case BYTE:
+      case SHORT:
+      case CHAR:
+      case INT:
+      case LONG:
+        return value;
+      case FLOAT:
+        return CodeBlock.of("Float.floatToIntBits($L)", value);
+      case DOUBLE:
+        return CodeBlock.of("Double.doubleToLongBits($L)", value);
+      case ARRAY:
+        return nullSafe(CodeBlock.of("$N($L)", helperFor(type), value), value, nullable);
+      case DECLARED:
+        return nullSafe(declaredValueOf(type, value), value, nullable);
+      default:
+        return nullSafe(CodeBlock.of("$L.hashCode()", value), value, nullable);
+    }
+  }
+
+  private CodeBlock declaredValueOf(TypeMirror type, CodeBlock value) {
+    Element element = types.asElement(type);
+    if (TypeName.get(type).isBoxedPrimitive()) {
+      return valueOf(types.unboxedType(type), value, false);
+    } else if (element.getKind() == ElementKind.ENUM) {
+      return CodeBlock.of("$L.ordinal()", value);
+    } else if (isCharSequence(type)) {
+      return CodeBlock.of("$N($L)", helperFor(type), value);
+    } else if (declaresLongHashCode((TypeElement) element)) {
+      return CodeBlock.of("$L.$N()", value, METHOD_NAME);
+    } else if (sequenceType(type) != null) {
+      return CodeBlock.of("$N($L)", collectionHelperFor(type), value);
+    } else {
+      return CodeBlock.of("$L.hashCode()", value);
+    }
+  }
+
+  private static CodeBlock nullSafe(CodeBlock expression, CodeBlock value, boolean nullable) {
+    if (!nullable) {
+      return expression;
+    }
+    return CodeBlock.of("($L == null ? 0 : $L)", value, expression);
+  }
+
+  /** Returns the name of the helper hashing a String, CharSequence or array of {@code type}. */
+  private String helperFor(TypeMirror type) {
+    TypeMirror erasure = types.erasure(type);
+    if (erasure.getKind() == TypeKind.DECLARED
+        && !((TypeElement) types.asElement(erasure)).getQualifiedName()
+        .contentEquals("java.lang.String")) {
+      erasure = elements.getTypeElement("java.lang.CharSequence").asType();
+    }
+
+    TypeName parameterType = TypeName.get(erasure);
+    if (helpers.containsKey(parameterType)) {
+      return HELPER_NAME;
+    }
+    // Reserve the slot first so that recursive array types do not generate the helper twice.
+    helpers.put(parameterType, null);
+
+    CodeBlock.Builder body = CodeBlock.builder();
+    if (erasure.getKind() == TypeKind.ARRAY) {
+      TypeMirror componentType = ((ArrayType) erasure).getComponentType();
+      body.addStatement("long h = value.length")
+          .beginControlFlow("for ($T element : value)", TypeName.get(componentType))
+          .addStatement(STEP, valueOf(componentType, CodeBlock.of("element"),
+              !componentType.getKind().isPrimitive()))
+          .endControlFlow();
+    } else {
+      body.addStatement("int length = value.length()")
+          .addStatement("long h = length")
+          .beginControlFlow("for (int i = 0; i < length; i++)")
+          .addStatement(STEP, "value.charAt(i)")
+          .endControlFlow();
+    }
+
+    helpers.put(parameterType, MethodSpec.methodBuilder(HELPER_NAME)
+        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+        .returns(TypeName.LONG)
+        .addParameter(ParameterSpec.builder(parameterType, "value").build())
+        .addCode(body.addStatement("return h").build())
+        .build());
+    return HELPER_NAME;
+  }
+
+  /**
+   * Returns the name of the helper hashing a List or Set of {@code type}, element by element.
+   * Helpers for different element types of one collection type get numbered names, since they
+   * cannot overload each other.
+   */
+  private String collectionHelperFor(TypeMirror type) {
+    TypeName parameterType = TypeName.get(type);
+    String name = helperNames.get(parameterType);
+    if (name != null) {
+      return name;
+    }
+    TypeName erasure = TypeName.get(types.erasure(type));
+    Integer count = erasureCounts.get(erasure);
+    name = count == null ? HELPER_NAME : HELPER_NAME + (count + 1);
+    erasureCounts.put(erasure, count == null ? 1 : count + 1);
+    // Reserve the name first so that recursive element types do not generate the helper twice.
+    helperNames.put(parameterType, name);
+
+    TypeElement sequence = sequenceType(type);
+    TypeMirror elementType = elementType(type, sequence);
+    CodeBlock element = valueOf(elementType, CodeBlock.of("element"), true);
+    CodeBlock.Builder body = CodeBlock.builder()
+        .addStatement("long h = value.size()")
+        .beginControlFlow("for ($T element : value)", TypeName.get(elementType));
+    if (sequence.getQualifiedName().contentEquals("java.util.Set")) {
+      body.addStatement("h += Long.rotateLeft($L * 0x9e3779b97f4a7c15L, 31)", element);
+    } else {
+      body.addStatement(STEP, element);
+    }
+    body.endControlFlow();
+
+    helpers.put(parameterType, MethodSpec.methodBuilder(name)
+        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+        .returns(TypeName.LONG)
+        .addParameter(ParameterSpec.builder(parameterType, "value").build())
+        .addCode(body.addStatement("return h").build())
+        .build());
+    return name;
+  }
+
+  /** Returns {@code java.util.List} or {@code java.util.Set} if {@code type} is one, or null. */
+  private TypeElement sequenceType(TypeMirror type) {
+    for (String name : new String[] {"java.util.List", "java.util.Set"}) {
+      TypeElement sequence = elements.getTypeElement(name);
+      if (types.isAssignable(types.erasure(type), types.erasure(sequence.asType()))) {
+        return sequence;
+      }
+    }
+    return null;
+  }
+
+  /** The element type that {@code type} gives the type parameter of {@code sequence}. */
+  private TypeMirror elementType(TypeMirror type, TypeElement sequence) {
+    if (types.isSameType(types.erasure(type), types.erasure(sequence.asType()))) {
+      List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+      if (arguments.isEmpty()) {
+        return elements.getTypeElement("java.lang.Object").asType();
+      }
+      TypeMirror argument = arguments.get(0);
+      if (argument.getKind() == TypeKind.WILDCARD) {
+        TypeMirror bound = ((WildcardType) argument).getExtendsBound();
+        argument = bound != null ? bound : elements.getTypeElement("java.lang.Object").asType();
+      }
+      return argument.getKind() == TypeKind.TYPEVAR ? types.erasure(argument) : argument;
+    }
+    for (TypeMirror supertype : types.directSupertypes(type)) {
+      if (types.isAssignable(types.erasure(supertype), types.erasure(sequence.asType()))) {
+        return elementType(supertype, sequence);
+      }
+    }
+    return elements.getTypeElement("java.lang.Object").asType();
+  }
+
+  private boolean isCharSequence(TypeMirror type) {
+    TypeElement charSequence = elements.getTypeElement("java.lang.CharSequence");
+    return types.isAssignable(types.erasure(type), charSequence.asType());
+  }
+
+  private boolean declaresLongHashCode(TypeElement typeElement) {
+    for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(typeElement))) {
+      if (method.getSimpleName().contentEquals(METHOD_NAME)
+          && method.getParameters().isEmpty()
+          && method.getReturnType().getKind() == TypeKind.LONG
+          && !method.getModifiers().contains(Modifier.PRIVATE)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,77 @@
+package com.github.reggar.ignorehashequals;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * How often each property was the first one to differ in recorded equals() calls, read from the
+ * file named by the {@code ignoreHashEquals.equalsProfile} processor option.
+ *
+ * <p>The file is the one written by the runtime {@code EqualsProfile} when the generated code was
+ * built with {@code ignoreHashEquals.recordEqualsProfile=true}: one
+ * {@code <qualified class name>#<property>=<count>} entry per line, with {@code #} comments.
+ */
+final class MismatchProfile {
+  static final String OPTION = "ignoreHashEquals.equalsProfile";
+  static final String RECORD_OPTION = "ignoreHashEquals.recordEqualsProfile";
+
+  static final MismatchProfile EMPTY =
+      new MismatchProfile(Collections.<String, Long>emptyMap());
+
+  private final Map<String, Long> mismatches;
+
+  private MismatchProfile(Map<String, Long> mismatches) {
+    this.mismatches = mismatches;
+  }
+
+  public boolean isEmpty() {
+    return mismatches.isEmpty();
+  }
+
+  public long mismatches(String className, String property) {
+    Long count = mismatches.get(className + '#' + property);
+    return count == null ? 0 : count;
+  }
+
+  public static MismatchProfile load(String path) throws IOException {
+    try (Reader reader =
+             new InputStreamReader(new FileInputStream(path), Charset.forName("UTF-8"))) {
+      return read(reader);
+    }
+  }
+
+  static MismatchProfile read(Reader reader) throws IOException {
+    Map<String, Long> mismatches = new HashMap<>();
+    BufferedReader lines = new BufferedReader(reader);
+    for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+
+      int separator = line.lastIndexOf('=');
+      if (separator < 0 || line.indexOf('#') < 0) {
+        throw new IOException("Malformed equals profile entry: " + line);
+      }
+
+      String key = line.substring(0, separator).trim();
+      long count;
+      try {
+        count = Long.parseLong(line.substring(separator + 1).trim());
+      } catch (NumberFormatException e) {
+        throw new IOException("Malformed equals profile entry: " + line, e);
+      }
+
+      Long previous = mismatches.get(key);
+      mismatches.put(key, previous == null ? count : previous + count);
+    }
+    return new MismatchProfile(Collections.unmodifiableMap(mismatches));
+  }
+}
@@ -0,0 +1,124 @@
+package com.github.reggar.ignorehashequals;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * What processing one AutoValue class cost the extension, reported when the
+ * {@code ignoreHashEquals.stats} processor option is set.
+ *
+ * <p>The option takes a comma separated list: {@code json} writes one
+ * {@code ignore-hash-equals/stats/<qualified class name>.json} file per class through the Filer,
+ * {@code notes} prints the same numbers as a compiler note. The extension API has no
+ * end-of-processing callback, so there is one report per class rather than one per build; the
+ * files are meant to be collected afterwards. They go to the generated sources directory rather
+ * than the class output, which is packaged into the jar.
+ */
+final class ProcessingStats {
+  static final String OPTION = "ignoreHashEquals.stats";
+  static final String REPORT_DIRECTORY = "ignore-hash-equals/stats/";
+
+  private final String className;
+  private final boolean applicable;
+  private final int properties;
+  private final int includedProperties;
+  private final long applicableNanos;
+  private final long generateClassNanos;
+
+  ProcessingStats(String className, boolean applicable, int properties, int includedProperties,
+                  long applicableNanos, long generateClassNanos) {
+    this.className = className;
+    this.applicable = applicable;
+    this.properties = properties;
+    this.includedProperties = includedProperties;
+    this.applicableNanos = applicableNanos;
+    this.generateClassNanos = generateClassNanos;
+  }
+
+  /** Which reports the {@code ignoreHashEquals.stats} option asks for. */
+  enum Output {
+    NONE, JSON, NOTES, JSON_AND_NOTES;
+
+    boolean isEnabled() {
+      return this != NONE;
+    }
+
+    boolean json() {
+      return this == JSON || this == JSON_AND_NOTES;
+    }
+
+    boolean notes() {
+      return this == NOTES || this == JSON_AND_NOTES;
+    }
+
+    static Output from(String optionValue) {
+      if (optionValue == null || optionValue.trim().isEmpty()) {
+        return NONE;
+      }
+
+      boolean json = false;
+      boolean notes = false;
+      for (String value : optionValue.split(",")) {
+        value = value.trim().toLowerCase(Locale.ROOT);
+        if (value.equals("json")) {
+          json = true;
+        } else if (value.equals("notes")) {
+          notes = true;
+        } else {
+          throw new RuntimeException("Unknown value '" + value + "' for " + OPTION
+              + ", expected 'json', 'notes' or both separated by a comma.");
+        }
+      }
+      return json ? (notes ? JSON_AND_NOTES : JSON) : NOTES;
+    }
+  }
+
+  public String toJson() {
+    return "{\"class\":\"" + className + "\""
+        + ",\"applicable\":" + applicable
+        + ",\"properties\":" + properties
+        + ",\"includedProperties\":" + includedProperties
+        + ",\"ignoredProperties\":" + (properties - includedProperties)
+        + ",\"applicableNanos\":" + applicableNanos
+        + ",\"generateClassNanos\":" + generateClassNanos
+        + "}\n";
+  }
+
+  public String toNote() {
+    return String.format(Locale.ROOT,
+        "ignoreHashEquals: %s applicable=%s properties=%d included=%d ignored=%d"
+            + " applicable()=%.3fms generateClass()=%.3fms",
+        className, applicable, properties, includedProperties, properties - includedProperties,
+        applicableNanos / 1e6, generateClassNanos / 1e6);
+  }
+
+  /** Reports these stats for {@code element} as {@code output} asks. */
+  public void report(ProcessingEnvironment processingEnvironment, TypeElement element,
+                     Output output) {
+    if (output.notes()) {
+      processingEnvironment.getMessager().printMessage(Diagnostic.Kind.NOTE, toNote(), element);
+    }
+    if (output.json()) {
+      try {
+        FileObject resource = processingEnvironment.getFiler().createResource(
+            StandardLocation.SOURCE_OUTPUT, "", REPORT_DIRECTORY + className + ".json", element);
+        try (Writer writer =
+                 new OutputStreamWriter(resource.openOutputStream(), Charset.forName("UTF-8"))) {
+          writer.write(toJson());
+        }
+      } catch (IOException e) {
+        processingEnvironment.getMessager().printMessage(Diagnostic.Kind.WARNING,
+            "Could not write processing stats for " + className + ": " + e.getMessage(), element);
+      }
+    }
+  }
+}
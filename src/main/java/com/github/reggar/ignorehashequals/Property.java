@@ -0,0 +1,71 @@
+package com.github.reggar.ignorehashequals;
+
+import com.squareup.javapoet.TypeName;
+
+import java.util.Set;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.type.TypeMirror;
+
+/** One property of a {@link ValueClass}, with everything the generators need to know about it. */
+final class Property {
+  private final String name;
+  private final ExecutableElement element;
+  private final TypeName typeName;
+  private final Set<String> annotations;
+  private final boolean included;
+  private final boolean nullable;
+  private final TypeCategory category;
+
+  Property(String name, ExecutableElement element, Set<String> annotations, boolean included,
+           boolean nullable, TypeCategory category) {
+    this.name = name;
+    this.element = element;
+    this.typeName = TypeName.get(element.getReturnType());
+    this.annotations = annotations;
+    this.included = included;
+    this.nullable = nullable;
+    this.category = category;
+  }
+
+  /** The property name, which is also the constructor parameter name. */
+  public String name() {
+    return name;
+  }
+
+  public ExecutableElement element() {
+    return element;
+  }
+
+  /** The name of the accessor method, which differs from {@link #name} for getX() properties. */
+  public String methodName() {
+    return element.getSimpleName().toString();
+  }
+
+  public TypeMirror type() {
+    return element.getReturnType();
+  }
+
+  public TypeName typeName() {
+    return typeName;
+  }
+
+  /** The simple names of the annotations on the accessor. */
+  public Set<String> annotations() {
+    return annotations;
+  }
+
+  /** True if equals() and hashCode() take this property into account. */
+  public boolean included() {
+    return included;
+  }
+
+  /** True if the value may be null, so that comparing or hashing it has to check for null. */
+  public boolean nullable() {
+    return nullable;
+  }
+
+  public TypeCategory category() {
+    return category;
+  }
+}
@@ -0,0 +1,256 @@
+package com.github.reggar.ignorehashequals;
+
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Modifier;
+
+/**
+ * The expressions that compare and hash single properties, shared by the AutoValue extension,
+ * which compares {@code this} with {@code that}, and {@link HashEqualsProcessor}, which compares
+ * two parameters. Properties are always read through their accessor methods.
+ */
+final class PropertyExpressions {
+  private static final String CHAR_SEQUENCE_EQUALS = "charSequenceEquals";
+  private static final String CHAR_SEQUENCE_HASH_CODE = "charSequenceHashCode";
+
+  private final String left;
+  private final String right;
+  private final boolean jdkHashMethods;
+
+  /**
+   * Expressions over the values named {@code left} and {@code right}, for code compiled at
+   * {@code sourceVersion}. Beyond Java 8 the expressions call the static hashCode methods of the
+   * wrapper types and {@link Objects}, which read each value once and which the JIT compiles to
+   * the same instructions as the hand-written forms. Java 8 sources keep the hand-written forms,
+   * so that their generated code does not change.
+   */
+  PropertyExpressions(String left, String right, SourceVersion sourceVersion) {
+    this.left = left;
+    this.right = right;
+    this.jdkHashMethods = sourceVersion.compareTo(SourceVersion.RELEASE_8) > 0;
+  }
+
+  /**
+   * The comparisons of every property joined with {@code &&}, one per line, with the sizes of the
+   * {@link #getSizeCheckedProperties size checked} properties compared ahead of the first
+   * comparison that may walk a value. {@code properties} must not be empty.
+   */
+  CodeBlock conjunction(List<Property> properties) {
+    CodeBlock.Builder builder = CodeBlock.builder();
+    List<Property> sizeChecked = getSizeCheckedProperties(properties);
+    for (int i = 0; i < properties.size(); i++) {
+      Property property = properties.get(i);
+      if (isDeepComparison(property)) {
+        for (Property sized : sizeChecked) {
+          builder.add(sizeEquals(sized)).add("\n&& ");
+        }
+        sizeChecked = Collections.emptyList();
+      }
+      builder.add(equals(property));
+      if (i < properties.size() - 1) {
+        builder.add("\n&& ");
+      }
+    }
+    return builder.build();
+  }
+
+  CodeBlock equals(Property property) {
+    CodeBlock a = value(left, property);
+    CodeBlock b = value(right, property);
+    TypeName propertyType = property.typeName();
+
+    if (propertyType.equals(TypeName.FLOAT)) {
+      return CodeBlock.of("(Float.floatToIntBits($L) == Float.floatToIntBits($L))", a, b);
+    } else if (propertyType.equals(TypeName.DOUBLE)) {
+      return CodeBlock.of("(Double.doubleToLongBits($L) == Double.doubleToLongBits($L))", a, b);
+    } else if (propertyType.isPrimitive()) {
+      return CodeBlock.of("($L == $L)", a, b);
+    } else if (property.category() == TypeCategory.ENUM
+        || property.category() == TypeCategory.IDENTITY) {
+      return CodeBlock.of("($L == $L)", a, b);
+    } else if (propertyType instanceof ArrayTypeName) {
+      return CodeBlock.of("($T.$N($L, $L))", Arrays.class,
+          isDeepArray(propertyType) ? "deepEquals" : "equals", a, b);
+    } else if (property.category() == TypeCategory.CHAR_SEQUENCE) {
+      return CodeBlock.of("($N($L, $L))", CHAR_SEQUENCE_EQUALS, a, b);
+    } else if (property.category() == TypeCategory.CACHED_HASH_VALUE) {
+      // Reading the cached hash codes is cheap, and rejects most unequal values without walking
+      // their properties.
+      CodeBlock equals = CodeBlock.of("$L.hashCode() == $L.hashCode() && $L.equals($L)",
+          a, b, a, b);
+      return property.nullable()
+          ? CodeBlock.of("(($L == null) ? ($L == null) : ($L != null && $L))", a, b, b, equals)
+          : CodeBlock.of("($L)", equals);
+    } else if (property.nullable() && jdkHashMethods) {
+      return CodeBlock.of("($T.equals($L, $L))", Objects.class, a, b);
+    } else if (property.nullable()) {
+      return CodeBlock.of("(($L == null) ? ($L == null) : $L.equals($L))", a, b, a, b);
+    } else {
+      return CodeBlock.of("($L.equals($L))", a, b);
+    }
+  }
+
+  /** The size or length comparison of a property picked by {@link #getSizeCheckedProperties}. */
+  CodeBlock sizeEquals(Property property) {
+    CodeBlock a = value(left, property);
+    CodeBlock b = value(right, property);
+    switch (property.category()) {
+      case STRING:
+        return CodeBlock.of("($L.length() == $L.length())", a, b);
+      case ARRAY:
+        return CodeBlock.of("($L.length == $L.length)", a, b);
+      case CHAR_SEQUENCE:
+        return CodeBlock.of("($L.length() == $L.length())", a, b);
+      case BYTE_BUFFER:
+        return CodeBlock.of("($L.remaining() == $L.remaining())", a, b);
+      default:
+        return CodeBlock.of("($L.size() == $L.size())", a, b);
+    }
+  }
+
+  /**
+   * The hash of the property of the left value: an int, or before Java 9 a long for longs and
+   * doubles, which the hash strategies narrow.
+   */
+  CodeBlock hashCode(Property property) {
+    CodeBlock value = value(left, property);
+    TypeName propertyType = property.typeName();
+
+    if (propertyType.equals(TypeName.BYTE) || propertyType.equals(TypeName.SHORT) ||
+        propertyType.equals(TypeName.CHAR) || propertyType.equals(TypeName.INT)) {
+      return value;
+    } else if (propertyType.isPrimitive() && jdkHashMethods) {
+      return CodeBlock.of("$T.hashCode($L)", propertyType.box(), value);
+    } else if (propertyType.equals(TypeName.LONG)) {
+      return CodeBlock.of("($L >>> 32) ^ $L", value, value);
+    } else if (propertyType.equals(TypeName.FLOAT)) {
+      return CodeBlock.of("Float.floatToIntBits($L)", value);
+    } else if (propertyType.equals(TypeName.DOUBLE)) {
+      return CodeBlock.of("(Double.doubleToLongBits($L) >>> 32) ^ Double.doubleToLongBits($L)",
+          value, value);
+    } else if (propertyType.equals(TypeName.BOOLEAN)) {
+      return CodeBlock.of("$L ? 1231 : 1237", value);
+    } else if (property.category() == TypeCategory.IDENTITY) {
+      return CodeBlock.of("$T.identityHashCode($L)", System.class, value);
+    } else if (propertyType instanceof ArrayTypeName) {
+      return CodeBlock.of("$T.$N($L)", Arrays.class,
+          isDeepArray(propertyType) ? "deepHashCode" : "hashCode", value);
+    } else if (property.category() == TypeCategory.CHAR_SEQUENCE) {
+      CodeBlock hashCode = CodeBlock.of("$N($L)", CHAR_SEQUENCE_HASH_CODE, value);
+      return property.nullable()
+          ? CodeBlock.of("($L == null) ? 0 : $L", value, hashCode) : hashCode;
+    } else if (property.nullable() && jdkHashMethods) {
+      return CodeBlock.of("$T.hashCode($L)", Objects.class, value);
+    } else if (property.nullable()) {
+      return CodeBlock.of("($L == null) ? 0 : $L.hashCode()", value, value);
+    } else {
+      return CodeBlock.of("$L.hashCode()", value);
+    }
+  }
+
+  private static CodeBlock value(String receiver, Property property) {
+    return CodeBlock.of("$N.$N()", receiver, property.methodName());
+  }
+
+  /**
+   * The private static helpers that the expressions of {@code properties} call. A CharSequence
+   * other than String is compared and hashed by its chars, read with {@code charAt} so that
+   * nothing is copied, and hashed like {@link String#hashCode()} so that equal contents of
+   * different implementations hash alike.
+   */
+  static List<MethodSpec> helpers(List<Property> properties) {
+    for (Property property : properties) {
+      if (property.category() == TypeCategory.CHAR_SEQUENCE) {
+        return Arrays.asList(charSequenceEquals(), charSequenceHashCode());
+      }
+    }
+    return Collections.emptyList();
+  }
+
+  private static MethodSpec charSequenceEquals() {
+    return MethodSpec.methodBuilder(CHAR_SEQUENCE_EQUALS)
+        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+        .returns(TypeName.BOOLEAN)
+        .addParameter(CharSequence.class, "a")
+        .addParameter(CharSequence.class, "b")
+        .beginControlFlow("if (a == b)")
+        .addStatement("return true")
+        .endControlFlow()
+        .beginControlFlow("if (a == null || b == null || a.length() != b.length())")
+        .addStatement("return false")
+        .endControlFlow()
+        .beginControlFlow("for (int i = 0, length = a.length(); i < length; i++)")
+        .beginControlFlow("if (a.charAt(i) != b.charAt(i))")
+        .addStatement("return false")
+        .endControlFlow()
+        .endControlFlow()
+        .addStatement("return true")
+        .build();
+  }
+
+  private static MethodSpec charSequenceHashCode() {
+    return MethodSpec.methodBuilder(CHAR_SEQUENCE_HASH_CODE)
+        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+        .returns(TypeName.INT)
+        .addParameter(CharSequence.class, "s")
+        .addStatement("int h = 0")
+        .beginControlFlow("for (int i = 0, length = s.length(); i < length; i++)")
+        .addStatement("h = 31 * h + s.charAt(i)")
+        .endControlFlow()
+        .addStatement("return h")
+        .build();
+  }
+
+  /**
+   * The properties whose sizes equals() compares in a pass of its own, ahead of the first
+   * comparison that may walk a value: the non-null strings, char sequences, byte buffers, arrays,
+   * collections and maps, when there are at least two of them or one is a collection or map.
+   * Unequal values with several large properties usually differ in the size of one of them, and
+   * the pass finds that without reading any elements. A single string, buffer or array gains
+   * nothing, its comparison checks the length first, but List.equals does not, so collections are
+   * always checked.
+   */
+  static List<Property> getSizeCheckedProperties(List<Property> properties) {
+    List<Property> sizeChecked = new ArrayList<>();
+    boolean collection = false;
+    for (Property property : properties) {
+      TypeCategory category = property.category();
+      if (!property.nullable() && (category == TypeCategory.STRING
+          || category == TypeCategory.CHAR_SEQUENCE || category == TypeCategory.BYTE_BUFFER
+          || category == TypeCategory.ARRAY || category == TypeCategory.COLLECTION)) {
+        sizeChecked.add(property);
+        collection |= category == TypeCategory.COLLECTION;
+      }
+    }
+    return sizeChecked.size() >= 2 || collection ? sizeChecked : Collections.<Property>emptyList();
+  }
+
+  /**
+   * True unless comparing the property is a single primitive, enum, identity or boxed comparison.
+   */
+  static boolean isDeepComparison(Property property) {
+    TypeCategory category = property.category();
+    return category != TypeCategory.PRIMITIVE && category != TypeCategory.ENUM
+        && category != TypeCategory.IDENTITY && category != TypeCategory.BOXED;
+  }
+
+  /**
+   * Returns true for arrays whose elements are references, such as {@code int[][]} or
+   * {@code Object[]}, which need the Arrays.deep* methods to compare nested arrays by content.
+   * Arrays of primitives keep Arrays.equals/hashCode, whose primitive overloads check the length
+   * first and, since Java 9, compare through the vectorized mismatch intrinsic.
+   */
+  static boolean isDeepArray(TypeName arrayType) {
+    return !((ArrayTypeName) arrayType).componentType.isPrimitive();
+  }
+}
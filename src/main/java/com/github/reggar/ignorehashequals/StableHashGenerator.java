@@ -0,0 +1,336 @@
+package com.github.reggar.ignorehashequals;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * Generates {@code long stableHash64()} and {@code int stableHash()} over the included properties,
+ * for value classes that declare either as an abstract method. Unlike {@code hashCode()}, the
+ * result depends only on the content of the properties, never on identity hash codes, so it is the
+ * same in every JVM and in every release of this extension, as long as the class keeps the same
+ * included properties in the same order.
+ *
+ * <p>The algorithm is fixed. Each property is reduced to a 64-bit value v: booleans to 1231 or
+ * 1237, other primitives widened, floats and doubles to their {@code floatToIntBits} and
+ * {@code doubleToLongBits}, null to 0, strings and other char sequences by folding their UTF-16
+ * units, enums by their {@code name()} like a string, arrays and lists by folding their elements
+ * in order, sets by the sum of {@code fmix64} of the element values, maps likewise over each key
+ * folded with its value, and nested values by their own {@code stableHash64()} or
+ * {@code stableHash()}. Folding starts from the length or size and applies
+ * {@code h = rotateLeft((h ^ v) * 0x9e3779b97f4a7c15L, 31)} per element. The class folds its
+ * property values in declaration order from 0, xors in the property count and finishes with the
+ * MurmurHash3 {@code fmix64}; {@code stableHash()} is {@code (int) (h ^ (h >>> 32))} of that. Any
+ * other property type is an error, since its only hash may be an identity hash.
+ */
+final class StableHashGenerator {
+  static final String METHOD_NAME = "stableHash";
+  static final String METHOD_NAME_64 = "stableHash64";
+
+  private static final String HELPER_NAME = "stableHashOf";
+  private static final String MIX_NAME = "stableMix";
+  private static final String STEP = "h = Long.rotateLeft((h ^ $L) * 0x9e3779b97f4a7c15L, 31)";
+
+  private final Types types;
+  private final Elements elements;
+  private final Map<TypeName, MethodSpec> helpers = new LinkedHashMap<>();
+  private final Map<TypeName, String> helperNames = new LinkedHashMap<>();
+  private final Set<TypeName> helperErasures = new HashSet<>();
+  private boolean mixHelper;
+
+  StableHashGenerator(ProcessingEnvironment processingEnvironment) {
+    this.types = processingEnvironment.getTypeUtils();
+    this.elements = processingEnvironment.getElementUtils();
+  }
+
+  /** Returns true if {@code property} is an abstract {@code int stableHash()} to implement. */
+  static boolean isStableHash(String property, ExecutableElement propertyElement) {
+    return property.equals(METHOD_NAME)
+        && propertyElement.getSimpleName().contentEquals(METHOD_NAME)
+        && propertyElement.getReturnType().getKind() == TypeKind.INT;
+  }
+
+  /** Returns true if {@code property} is an abstract {@code long stableHash64()} to implement. */
+  static boolean isStableHash64(String property, ExecutableElement propertyElement) {
+    return property.equals(METHOD_NAME_64)
+        && propertyElement.getSimpleName().contentEquals(METHOD_NAME_64)
+        && propertyElement.getReturnType().getKind() == TypeKind.LONG;
+  }
+
+  /**
+   * Returns {@code stableHash64()}, or throws {@link IllegalArgumentException} naming the first
+   * property without a stable hash.
+   */
+  MethodSpec generate64(List<Property> properties) {
+    return MethodSpec.methodBuilder(METHOD_NAME_64)
+        .addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+        .returns(TypeName.LONG)
+        .addCode(body(properties))
+        .addStatement("return h")
+        .build();
+  }
+
+  /**
+   * Returns {@code stableHash()}, folding {@code stableHash64()} if the class declares that too,
+   * or throws {@link IllegalArgumentException} naming the first property without a stable hash.
+   */
+  MethodSpec generate(List<Property> properties, boolean has64) {
+    MethodSpec.Builder builder = MethodSpec.methodBuilder(METHOD_NAME)
+        .addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+        .returns(TypeName.INT);
+    if (has64) {
+      builder.addStatement("long h = $N()", METHOD_NAME_64);
+    } else {
+      builder.addCode(body(properties));
+    }
+    return builder.addStatement("return (int) (h ^ (h >>> 32))").build();
+  }
+
+  /** The private static helpers that the generated methods call. */
+  Collection<MethodSpec> helpers() {
+    List<MethodSpec> all = new ArrayList<>(helpers.values());
+    if (mixHelper) {
+      all.add(MethodSpec.methodBuilder(MIX_NAME)
+          .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+          .returns(TypeName.LONG)
+          .addParameter(TypeName.LONG, "h")
+          .addCode(fmix64())
+          .addStatement("return h")
+          .build());
+    }
+    return all;
+  }
+
+  /** The statements leaving the finished 64-bit hash of {@code properties} in {@code h}. */
+  private CodeBlock body(List<Property> properties) {
+    CodeBlock.Builder body = CodeBlock.builder()
+        .addStatement("long h = 0");
+    for (Property property : properties) {
+      CodeBlock value = CodeBlock.of("this.$N()", property.methodName());
+      body.addStatement(STEP, valueOf(property.type(), value, property.nullable(),
+          property.name()));
+    }
+    return body.addStatement("h ^= $L", properties.size())
+        .add(fmix64())
+        .build();
+  }
+
+  private static CodeBlock fmix64() {
+    return CodeBlock.builder()
+        .addStatement("h ^= h >>> 33")
+        .addStatement("h *= 0xff51afd7ed558ccdL")
+        .addStatement("h ^= h >>> 33")
+        .addStatement("h *= 0xc4ceb9fe1a85ec53L")
+        .addStatement("h ^= h >>> 33")
+        .build();
+  }
+
+  /** Returns a long (or narrower) expression stably hashing {@code value} of {@code type}. */
+  private CodeBlock valueOf(TypeMirror type, CodeBlock value, boolean nullable, String property) {
+    switch (type.getKind()) {
+      case BOOLEAN:
+        return CodeBlock.of("($L ? 1231 : 1237)", value);
+      case BYTE:
+      case SHORT:
+      case CHAR:
+      case INT:
+      case LONG:
+        return value;
+      case FLOAT:
+        return CodeBlock.of("Float.floatToIntBits($L)", value);
+      case DOUBLE:
+        return CodeBlock.of("Double.doubleToLongBits($L)", value);
+      case ARRAY:
+        return nullSafe(CodeBlock.of("$N($L)", helperFor(type, property), value), value, nullable);
+      case DECLARED:
+        return nullSafe(declaredValueOf(type, value, property), value, nullable);
+      default:
+        throw unsupported(type, property);
+    }
+  }
+
+  private CodeBlock declaredValueOf(TypeMirror type, CodeBlock value, String property) {
+    Element element = types.asElement(type);
+    if (TypeName.get(type).isBoxedPrimitive()) {
+      return valueOf(types.unboxedType(type), value, false, property);
+    } else if (element.getKind() == ElementKind.ENUM) {
+      return CodeBlock.of("$N($L.name())", helperFor(charSequence(), property), value);
+    } else if (isSubtype(type, "java.lang.CharSequence")) {
+      return CodeBlock.of("$N($L)", helperFor(type, property), value);
+    } else if (declares((TypeElement) element, METHOD_NAME_64, TypeKind.LONG)) {
+      return CodeBlock.of("$L.$N()", value, METHOD_NAME_64);
+    } else if (declares((TypeElement) element, METHOD_NAME, TypeKind.INT)) {
+      return CodeBlock.of("$L.$N()", value, METHOD_NAME);
+    } else if (isSubtype(type, "java.util.List") || isSubtype(type, "java.util.Set")
+        || isSubtype(type, "java.util.Map")) {
+      return CodeBlock.of("$N($L)", helperFor(type, property), value);
+    }
+    throw unsupported(type, property);
+  }
+
+  private static CodeBlock nullSafe(CodeBlock expression, CodeBlock value, boolean nullable) {
+    if (!nullable) {
+      return expression;
+    }
+    return CodeBlock.of("($L == null ? 0 : $L)", value, expression);
+  }
+
+  /** Returns the name of the helper hashing a char sequence, array, list, set or map. */
+  private String helperFor(TypeMirror type, String property) {
+    if (type.getKind() == TypeKind.DECLARED && isSubtype(type, "java.lang.CharSequence")) {
+      type = charSequence();
+    }
+    TypeName parameterType = TypeName.get(type);
+    String name = helperNames.get(parameterType);
+    if (name != null) {
+      return name;
+    }
+    // Overloads cannot differ in type arguments only, so those get a numbered name.
+    name = helperErasures.add(TypeName.get(types.erasure(type)))
+        ? HELPER_NAME : HELPER_NAME + helperNames.size();
+    // Reserve the name first so that recursive types do not generate the helper twice.
+    helperNames.put(parameterType, name);
+
+    CodeBlock.Builder body = CodeBlock.builder();
+    if (type.getKind() == TypeKind.ARRAY) {
+      TypeMirror componentType = ((ArrayType) type).getComponentType();
+      body.addStatement("long h = value.length")
+          .beginControlFlow("for ($T element : value)", TypeName.get(componentType))
+          .addStatement(STEP, valueOf(componentType, CodeBlock.of("element"),
+              !componentType.getKind().isPrimitive(), property))
+          .endControlFlow();
+    } else if (isSubtype(type, "java.lang.CharSequence")) {
+      body.addStatement("int length = value.length()")
+          .addStatement("long h = length")
+          .beginControlFlow("for (int i = 0; i < length; i++)")
+          .addStatement(STEP, "value.charAt(i)")
+          .endControlFlow();
+    } else if (isSubtype(type, "java.util.List")) {
+      TypeMirror elementType = typeArgument(type, "java.util.List", 0, property);
+      body.addStatement("long h = value.size()")
+          .beginControlFlow("for ($T element : value)", TypeName.get(elementType))
+          .addStatement(STEP, valueOf(elementType, CodeBlock.of("element"), true, property))
+          .endControlFlow();
+    } else if (isSubtype(type, "java.util.Set")) {
+      // Summed, since equal sets may iterate in different orders.
+      TypeMirror elementType = typeArgument(type, "java.util.Set", 0, property);
+      mixHelper = true;
+      body.addStatement("long sum = 0")
+          .beginControlFlow("for ($T element : value)", TypeName.get(elementType))
+          .addStatement("sum += $N($L)", MIX_NAME,
+              valueOf(elementType, CodeBlock.of("element"), true, property))
+          .endControlFlow()
+          .addStatement("long h = value.size()")
+          .addStatement(STEP, "sum");
+    } else {
+      TypeMirror keyType = typeArgument(type, "java.util.Map", 0, property);
+      TypeMirror valueType = typeArgument(type, "java.util.Map", 1, property);
+      TypeName entryType = ParameterizedTypeName.get(ClassName.get(Map.Entry.class),
+          TypeName.get(keyType), TypeName.get(valueType));
+      mixHelper = true;
+      body.addStatement("long sum = 0")
+          .beginControlFlow("for ($T entry : value.entrySet())", entryType)
+          .addStatement("long k = $L",
+              valueOf(keyType, CodeBlock.of("entry.getKey()"), true, property))
+          .addStatement("sum += $N(Long.rotateLeft(k * 0x9e3779b97f4a7c15L, 31) ^ $L)", MIX_NAME,
+              valueOf(valueType, CodeBlock.of("entry.getValue()"), true, property))
+          .endControlFlow()
+          .addStatement("long h = value.size()")
+          .addStatement(STEP, "sum");
+    }
+
+    helpers.put(parameterType, MethodSpec.methodBuilder(name)
+        .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+        .returns(TypeName.LONG)
+        .addParameter(ParameterSpec.builder(parameterType, "value").build())
+        .addCode(body.addStatement("return h").build())
+        .build());
+    return name;
+  }
+
+  /**
+   * The type argument at {@code index} that {@code type} passes to its supertype
+   * {@code className}, or the upper bound of a wildcard there.
+   */
+  private TypeMirror typeArgument(TypeMirror type, String className, int index,
+                                  String property) {
+    TypeElement target = elements.getTypeElement(className);
+    List<TypeMirror> pending = new ArrayList<>();
+    pending.add(type);
+    while (!pending.isEmpty()) {
+      TypeMirror candidate = pending.remove(0);
+      if (types.isSameType(types.erasure(candidate), types.erasure(target.asType()))) {
+        List<? extends TypeMirror> arguments = ((DeclaredType) candidate).getTypeArguments();
+        if (arguments.isEmpty()) {
+          break;
+        }
+        TypeMirror argument = arguments.get(index);
+        if (argument.getKind() == TypeKind.WILDCARD) {
+          argument = ((WildcardType) argument).getExtendsBound();
+          if (argument == null) {
+            break;
+          }
+        }
+        return argument;
+      }
+      pending.addAll(types.directSupertypes(candidate));
+    }
+    throw unsupported(type, property);
+  }
+
+  private TypeMirror charSequence() {
+    return elements.getTypeElement("java.lang.CharSequence").asType();
+  }
+
+  private boolean isSubtype(TypeMirror type, String className) {
+    TypeElement target = elements.getTypeElement(className);
+    return types.isAssignable(types.erasure(type), types.erasure(target.asType()));
+  }
+
+  private boolean declares(TypeElement typeElement, String name, TypeKind returnKind) {
+    for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(typeElement))) {
+      if (method.getSimpleName().contentEquals(name)
+          && method.getParameters().isEmpty()
+          && method.getReturnType().getKind() == returnKind
+          && !method.getModifiers().contains(Modifier.PRIVATE)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static IllegalArgumentException unsupported(TypeMirror type, String property) {
+    return new IllegalArgumentException("Property " + property + " of type " + type
+        + " has no stable hash; " + METHOD_NAME + "() supports primitives, strings, enums, "
+        + "arrays, lists, sets, maps and values that declare " + METHOD_NAME_64 + "() or "
+        + METHOD_NAME + "()");
+  }
+}
@@ -0,0 +1,112 @@
+package com.github.reggar.ignorehashequals;
+
+import com.squareup.javapoet.TypeName;
+
+import java.util.Set;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * The kind of a property type, as far as generating {@code equals()} is concerned. The cost is a
+ * rough rank of how expensive comparing two values of the category is, lowest first.
+ */
+enum TypeCategory {
+  PRIMITIVE(0),
+  ENUM(0),
+  /**
+   * A reference annotated with {@code @IdentityHashEquals}, such as an interned or singleton value,
+   * compared with {@code ==} and hashed with {@link System#identityHashCode}.
+   */
+  IDENTITY(0),
+  BOXED(1),
+  STRING(1),
+  ARRAY(2),
+  /** A CharSequence other than String, compared and hashed by its chars. */
+  CHAR_SEQUENCE(2),
+  /** A ByteBuffer, whose equals() and hashCode() already look only at the remaining bytes. */
+  BYTE_BUFFER(2),
+  COLLECTION(3),
+  /**
+   * An AutoValue class with {@code @CacheHashCode}, whose generated equals() is only worth calling
+   * once the cached hash codes of both values match.
+   */
+  CACHED_HASH_VALUE(4),
+  OBJECT(4);
+
+  static final String IDENTITY_ANNOTATION_NAME = "IdentityHashEquals";
+
+  private final int equalsCost;
+
+  TypeCategory(int equalsCost) {
+    this.equalsCost = equalsCost;
+  }
+
+  public int equalsCost() {
+    return equalsCost;
+  }
+
+  /**
+   * The category of a property of {@code type} with the given annotations: {@link #IDENTITY} for
+   * references annotated with {@code @IdentityHashEquals}, otherwise the category of the type.
+   */
+  public static TypeCategory of(TypeMirror type, Set<String> annotations, Types types,
+                                Elements elements) {
+    TypeCategory category = of(type, types, elements);
+    return category != PRIMITIVE && annotations.contains(IDENTITY_ANNOTATION_NAME)
+        ? IDENTITY : category;
+  }
+
+  public static TypeCategory of(TypeMirror type, Types types, Elements elements) {
+    if (type.getKind().isPrimitive()) {
+      return PRIMITIVE;
+    } else if (type.getKind() == TypeKind.ARRAY) {
+      return ARRAY;
+    } else if (type.getKind() != TypeKind.DECLARED) {
+      return OBJECT;
+    }
+
+    Element element = types.asElement(type);
+    if (element.getKind() == ElementKind.ENUM) {
+      return ENUM;
+    } else if (TypeName.get(type).isBoxedPrimitive()) {
+      return BOXED;
+    } else if (((TypeElement) element).getQualifiedName().contentEquals("java.lang.String")) {
+      return STRING;
+    } else if (isAssignable(type, "java.lang.CharSequence", types, elements)) {
+      return CHAR_SEQUENCE;
+    } else if (isAssignable(type, "java.nio.ByteBuffer", types, elements)) {
+      return BYTE_BUFFER;
+    } else if (isAssignable(type, "java.util.Collection", types, elements)
+        || isAssignable(type, "java.util.Map", types, elements)) {
+      return COLLECTION;
+    } else if (isCachedHashValue(element)) {
+      return CACHED_HASH_VALUE;
+    } else {
+      return OBJECT;
+    }
+  }
+
+  /**
+   * Returns true for AutoValue classes that this extension gives a cached hash code. Both
+   * annotations are matched by simple name, so a {@code @CacheHashCode} with source retention is
+   * only seen on classes compiled in the same compilation.
+   */
+  private static boolean isCachedHashValue(Element element) {
+    Set<String> annotations = ValueClass.getAnnotations(element);
+    return annotations.contains("AutoValue")
+        && annotations.contains(HashCodeCache.ANNOTATION_NAME);
+  }
+
+  private static boolean isAssignable(TypeMirror type, String className, Types types,
+                                      Elements elements) {
+    TypeElement target = elements.getTypeElement(className);
+    return target != null
+        && types.isAssignable(types.erasure(type), types.erasure(target.asType()));
+  }
+}
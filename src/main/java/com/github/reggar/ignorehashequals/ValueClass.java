@@ -0,0 +1,177 @@
+package com.github.reggar.ignorehashequals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * The analysis of one AutoValue class: its annotations, whether it uses {@code @IgnoreHashEquals}
+ * or {@code @IncludeHashEquals}, and its properties with their annotations, nullability and
+ * {@link TypeCategory}. It is computed once per class and never changes afterwards, so it can be
+ * shared between {@code applicable()} and {@code generateClass()} and across threads.
+ */
+final class ValueClass {
+  /** The simple names of the annotations marking a property as never null. */
+  static final Set<String> NON_NULL_ANNOTATIONS = Collections.unmodifiableSet(
+      new LinkedHashSet<>(Arrays.asList("Nonnull", "NonNull", "NotNull")));
+
+  private final TypeElement element;
+  private final Set<String> annotations;
+  private final AnnotationType annotationType;
+  private final List<Property> properties;
+  private final List<Property> includedProperties;
+
+  private ValueClass(TypeElement element, Set<String> annotations, AnnotationType annotationType,
+                     List<Property> properties) {
+    this.element = element;
+    this.annotations = annotations;
+    this.annotationType = annotationType;
+    this.properties = Collections.unmodifiableList(properties);
+
+    List<Property> includedProperties = new ArrayList<>();
+    for (Property property : properties) {
+      if (property.included()) {
+        includedProperties.add(property);
+      }
+    }
+    this.includedProperties = Collections.unmodifiableList(includedProperties);
+  }
+
+  /**
+   * Analyzes {@code element} with the given properties, leaving out the {@code consumed} ones that
+   * the extension implements itself. The first property annotated with {@code @IgnoreHashEquals}
+   * or {@code @IncludeHashEquals} decides which of the two the class uses.
+   */
+  public static ValueClass analyze(ProcessingEnvironment processingEnvironment,
+                                   TypeElement element,
+                                   Map<String, ExecutableElement> properties,
+                                   Set<String> consumed) {
+    Map<String, Set<String>> annotations = new LinkedHashMap<>();
+    for (Map.Entry<String, ExecutableElement> entry : properties.entrySet()) {
+      annotations.put(entry.getKey(), getAnnotations(entry.getValue()));
+    }
+    return analyze(processingEnvironment, element, properties, consumed, annotations, false);
+  }
+
+  /**
+   * Analyzes {@code element} like {@link #analyze(ProcessingEnvironment, TypeElement, Map, Set)},
+   * taking the annotations of each property from {@code annotations} rather than from its
+   * accessor, for properties whose annotations may also sit on a field or record component.
+   * AutoValue rejects null for any property without {@code @Nullable}, but the fields and record
+   * components of other classes have no such check, so with {@code nullableByDefault} every
+   * reference property is taken to be nullable unless annotated with one of the
+   * {@link #NON_NULL_ANNOTATIONS}.
+   */
+  public static ValueClass analyze(ProcessingEnvironment processingEnvironment,
+                                   TypeElement element,
+                                   Map<String, ExecutableElement> properties,
+                                   Set<String> consumed,
+                                   Map<String, Set<String>> annotations,
+                                   boolean nullableByDefault) {
+    Types types = processingEnvironment.getTypeUtils();
+    Elements elements = processingEnvironment.getElementUtils();
+
+    AnnotationType annotationType = AnnotationType.NOT_PRESENT;
+    for (String property : properties.keySet()) {
+      AnnotationType propertyAnnotationType = AnnotationType.from(annotations.get(property));
+      if (propertyAnnotationType == AnnotationType.ERROR) {
+        throw new RuntimeException("Annotations are mutually exclusive, " +
+                "only one annotation type can be included at the same time.");
+      }
+      if (annotationType == AnnotationType.NOT_PRESENT) {
+        annotationType = propertyAnnotationType;
+      }
+    }
+
+    List<Property> analyzed = new ArrayList<>();
+    for (Map.Entry<String, ExecutableElement> entry : properties.entrySet()) {
+      if (consumed.contains(entry.getKey())) {
+        continue;
+      }
+
+      ExecutableElement propertyElement = entry.getValue();
+      Set<String> propertyAnnotations = annotations.get(entry.getKey());
+      boolean nullable = propertyAnnotations.contains("Nullable")
+          || (nullableByDefault && !propertyElement.getReturnType().getKind().isPrimitive()
+              && Collections.disjoint(propertyAnnotations, NON_NULL_ANNOTATIONS));
+      analyzed.add(new Property(entry.getKey(), propertyElement, propertyAnnotations,
+          annotationType.shouldBeIncluded(propertyAnnotations), nullable,
+          TypeCategory.of(propertyElement.getReturnType(), propertyAnnotations, types,
+              elements)));
+    }
+
+    return new ValueClass(element, getAnnotations(element), annotationType, analyzed);
+  }
+
+  public TypeElement element() {
+    return element;
+  }
+
+  /** The simple names of the annotations on the class. */
+  public Set<String> annotations() {
+    return annotations;
+  }
+
+  public AnnotationType annotationType() {
+    return annotationType;
+  }
+
+  /** Every property, in declaration order. */
+  public List<Property> properties() {
+    return properties;
+  }
+
+  /** The properties that equals() and hashCode() take into account, in declaration order. */
+  public List<Property> includedProperties() {
+    return includedProperties;
+  }
+
+  /** Returns true if some property is compared by identity, with {@code @IdentityHashEquals}. */
+  public boolean hasIdentityProperties() {
+    for (Property property : properties) {
+      if (property.category() == TypeCategory.IDENTITY) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns true if the properties are exactly {@code names}, in the same order. */
+  public boolean hasProperties(Collection<String> names) {
+    if (names.size() != properties.size()) {
+      return false;
+    }
+    int i = 0;
+    for (String name : names) {
+      if (!properties.get(i++).name().equals(name)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static Set<String> getAnnotations(Element element) {
+    Set<String> set = new LinkedHashSet<>();
+
+    List<? extends AnnotationMirror> annotations = element.getAnnotationMirrors();
+    for (AnnotationMirror annotation : annotations) {
+      set.add(annotation.getAnnotationType().asElement().getSimpleName().toString());
+    }
+
+    return Collections.unmodifiableSet(set);
+  }
+}
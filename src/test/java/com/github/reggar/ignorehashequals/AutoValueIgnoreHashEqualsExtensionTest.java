@@ -19,19 +19,37 @@ import com.google.auto.value.processor.AutoValueProcessor;
 import com.google.testing.compile.JavaFileObjects;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import javax.lang.model.SourceVersion;
 import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
 
 import static com.google.common.truth.Truth.assertAbout;
 import static com.google.testing.compile.JavaSourcesSubjectFactory.javaSources;
+import static org.junit.Assume.assumeTrue;
 
 public final class AutoValueIgnoreHashEqualsExtensionTest {
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   private JavaFileObject ignoreHashEquals;
   private JavaFileObject includeHashEquals;
   private JavaFileObject nullable;
+  private JavaFileObject cacheHashCode;
 
   @Before public void setUp() {
     ignoreHashEquals = JavaFileObjects.forSourceString("test.IgnoreHashEquals", ""
@@ -70,6 +88,17 @@ public final class AutoValueIgnoreHashEqualsExtensionTest {
         + "@Target({METHOD, PARAMETER, FIELD})\n"
         + "public @interface Nullable {\n"
         + "}");
+    cacheHashCode = JavaFileObjects.forSourceString("test.CacheHashCode", ""
+        + "package test;\n"
+        + "import java.lang.annotation.Retention;\n"
+        + "import java.lang.annotation.Target;\n"
+        + "import static java.lang.annotation.ElementType.TYPE;\n"
+        + "import static java.lang.annotation.RetentionPolicy.SOURCE;\n"
+        + "@Retention(SOURCE)\n"
+        + "@Target(TYPE)\n"
+        + "public @interface CacheHashCode {\n"
+        + "  boolean eager() default false;\n"
+        + "}");
   }
 
   @Test public void ignoreHashEqualsAnnotation() {
@@ -114,9 +143,11 @@ public final class AutoValueIgnoreHashEqualsExtensionTest {
                 + "          && (Float.floatToIntBits(this.d()) == Float.floatToIntBits(that.d()))\n"
                 + "          && (Double.doubleToLongBits(this.e()) == Double.doubleToLongBits(that.e()))\n"
                 + "          && (this.f() == that.f())\n"
-                + "          && (Arrays.equals(this.g(), that.g()))\n"
+                + "          && (this.h().length() == that.h().length())\n"
+                + "          && (this.g().length == that.g().length)\n"
                 + "          && (this.h().equals(that.h()))\n"
-                + "          && ((this.i() == null) ? (that.i() == null) : this.i().equals(that.i()));\n"
+                + "          && ((this.i() == null) ? (that.i() == null) : this.i().equals(that.i()))\n"
+                + "          && (Arrays.equals(this.g(), that.g()));\n"
                 + "    }\n"
                 + "    return false;\n"
                 + "  }\n"
@@ -135,11 +166,11 @@ public final class AutoValueIgnoreHashEqualsExtensionTest {
                 + "    h *= 1000003;\n"
                 + "    h ^= this.f() ? 1231 : 1237;\n"
                 + "    h *= 1000003;\n"
-                + "    h ^= java.util.Arrays.hashCode(this.g());\n"
+                + "    h ^= Arrays.hashCode(this.g());\n"
                 + "    h *= 1000003;\n"
                 + "    h ^= this.h().hashCode();\n"
                 + "    h *= 1000003;\n"
-                + "    h ^= (i() == null) ? 0 : this.i().hashCode();\n"
+                + "    h ^= (this.i() == null) ? 0 : this.i().hashCode();\n"
                 + "    return h;\n"
                 + "  }\n"
                 + "}"
@@ -147,6 +178,7 @@ public final class AutoValueIgnoreHashEqualsExtensionTest {
 
     assertAbout(javaSources())
         .that(Arrays.asList(ignoreHashEquals, nullable, source))
+        .withCompilerOptions(java8())
         .processedWith(new AutoValueProcessor())
         .compilesWithoutError()
         .and()
@@ -197,9 +229,11 @@ public final class AutoValueIgnoreHashEqualsExtensionTest {
             + "          && (Float.floatToIntBits(this.d()) == Float.floatToIntBits(that.d()))\n"
             + "          && (Double.doubleToLongBits(this.e()) == Double.doubleToLongBits(that.e()))\n"
             + "          && (this.f() == that.f())\n"
-            + "          && (Arrays.equals(this.g(), that.g()))\n"
+            + "          && (this.h().length() == that.h().length())\n"
+            + "          && (this.g().length == that.g().length)\n"
             + "          && (this.h().equals(that.h()))\n"
-            + "          && ((this.i() == null) ? (that.i() == null) : this.i().equals(that.i()));\n"
+            + "          && ((this.i() == null) ? (that.i() == null) : this.i().equals(that.i()))\n"
+            + "          && (Arrays.equals(this.g(), that.g()));\n"
             + "    }\n"
             + "    return false;\n"
             + "  }\n"
@@ -218,11 +252,11 @@ public final class AutoValueIgnoreHashEqualsExtensionTest {
             + "    h *= 1000003;\n"
             + "    h ^= this.f() ? 1231 : 1237;\n"
             + "    h *= 1000003;\n"
-            + "    h ^= java.util.Arrays.hashCode(this.g());\n"
+            + "    h ^= Arrays.hashCode(this.g());\n"
             + "    h *= 1000003;\n"
             + "    h ^= this.h().hashCode();\n"
             + "    h *= 1000003;\n"
-            + "    h ^= (i() == null) ? 0 : this.i().hashCode();\n"
+            + "    h ^= (this.i() == null) ? 0 : this.i().hashCode();\n"
             + "    return h;\n"
             + "  }\n"
             + "}"
@@ -230,6 +264,7 @@ public final class AutoValueIgnoreHashEqualsExtensionTest {
 
     assertAbout(javaSources())
             .that(Arrays.asList(ignoreHashEquals, nullable, source))
+            .withCompilerOptions(java8())
             .processedWith(new AutoValueProcessor())
             .compilesWithoutError()
             .and()
@@ -272,8 +307,8 @@ public final class AutoValueIgnoreHashEqualsExtensionTest {
             + "    }\n"
             + "    if (o instanceof Test) {\n"
             + "      Test that = (Test) o;\n"
-            + "      return ((this.a() == null) ? (that.a() == null) : this.a().equals(that.a()))\n"
-            + "          && (this.b() == that.b());\n"
+            + "      return (this.b() == that.b())\n"
+            + "          && ((this.a() == null) ? (that.a() == null) : this.a().equals(that.a()));\n"
             + "    }\n"
             + "    return false;\n"
             + "  }\n"
@@ -282,7 +317,7 @@ public final class AutoValueIgnoreHashEqualsExtensionTest {
             + "  public final int hashCode() {\n"
             + "    int h = 1;\n"
             + "    h *= 1000003;\n"
-            + "    h ^= (a() == null) ? 0 : this.a().hashCode();\n"
+            + "    h ^= (this.a() == null) ? 0 : this.a().hashCode();\n"
             + "    h *= 1000003;\n"
             + "    h ^= this.b();\n"
             + "    return h;\n"
@@ -292,6 +327,7 @@ public final class AutoValueIgnoreHashEqualsExtensionTest {
 
     assertAbout(javaSources())
             .that(Arrays.asList(includeHashEquals, nullable, source))
+            .withCompilerOptions(java8())
             .processedWith(new AutoValueProcessor())
             .compilesWithoutError()
             .and()
@@ -336,8 +372,8 @@ public final class AutoValueIgnoreHashEqualsExtensionTest {
             + "    }\n"
             + "    if (o instanceof Parent.Test) {\n"
             + "      Parent.Test that = (Parent.Test) o;\n"
-            + "      return ((this.a() == null) ? (that.a() == null) : this.a().equals(that.a()))\n"
-            + "          && (this.b() == that.b());\n"
+            + "      return (this.b() == that.b())\n"
+            + "          && ((this.a() == null) ? (that.a() == null) : this.a().equals(that.a()));\n"
             + "    }\n"
             + "    return false;\n"
             + "  }\n"
@@ -346,7 +382,7 @@ public final class AutoValueIgnoreHashEqualsExtensionTest {
             + "  public final int hashCode() {\n"
             + "    int h = 1;\n"
             + "    h *= 1000003;\n"
-            + "    h ^= (a() == null) ? 0 : this.a().hashCode();\n"
+            + "    h ^= (this.a() == null) ? 0 : this.a().hashCode();\n"
             + "    h *= 1000003;\n"
             + "    h ^= this.b();\n"
             + "    return h;\n"
@@ -356,6 +392,7 @@ public final class AutoValueIgnoreHashEqualsExtensionTest {
 
     assertAbout(javaSources())
             .that(Arrays.asList(includeHashEquals, nullable, source))
+            .withCompilerOptions(java8())
             .processedWith(new AutoValueProcessor())
             .compilesWithoutError()
             .and()
@@ -405,32 +442,2829 @@ public final class AutoValueIgnoreHashEqualsExtensionTest {
 
     assertAbout(javaSources())
             .that(Arrays.asList(ignoreHashEquals, nullable, source))
+            .withCompilerOptions(java8())
             .processedWith(new AutoValueProcessor())
             .compilesWithoutError()
             .and()
             .generatesSources(expectedSource);
   }
 
-  @Test public void annotationsAreMutuallyExclusive() {
+  @Test public void cacheHashCodeLazily() {
     JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
             + "package test;\n"
             + "import com.google.auto.value.AutoValue;\n"
-            + "@AutoValue public abstract class Test {\n"
-            + "@IncludeHashEquals @Nullable public abstract String a();\n"
-            + "@IncludeHashEquals public abstract int b();\n"
-            + "@IgnoreHashEquals public abstract long c();\n"
-            + "public abstract float d();\n"
-            + "public abstract double e();\n"
-            + "public abstract boolean f();\n"
-            + "public abstract int[] g();\n"
-            + "public abstract String h();\n"
-            + "@Nullable public abstract String i();\n"
+            + "@CacheHashCode @AutoValue public abstract class Test {\n"
+            + "public abstract int a();\n"
+            + "@IgnoreHashEquals public abstract String b();\n"
             + "}\n"
     );
 
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  private transient int cachedHashCode;\n"
+            + "\n"
+            + "  AutoValue_Test(int a, String b) {\n"
+            + "    super(a, b);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.hashCode() == that.hashCode())\n"
+            + "          && (this.a() == that.a());\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = cachedHashCode;\n"
+            + "    if (h == 0) {\n"
+            + "      h = computeHashCode();\n"
+            + "      cachedHashCode = h;\n"
+            + "    }\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  private int computeHashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.a();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+
     assertAbout(javaSources())
-            .that(Arrays.asList(includeHashEquals, nullable, source))
+            .that(Arrays.asList(ignoreHashEquals, cacheHashCode, source))
+            .withCompilerOptions(java8())
             .processedWith(new AutoValueProcessor())
-            .failsToCompile();
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void cacheHashCodeEagerly() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@CacheHashCode(eager = true) @AutoValue public abstract class Test {\n"
+            + "public abstract int a();\n"
+            + "@Nullable public abstract String b();\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  private final int cachedHashCode;\n"
+            + "\n"
+            + "  AutoValue_Test(int a, String b) {\n"
+            + "    super(a, b);\n"
+            + "    this.cachedHashCode = computeHashCode();\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.hashCode() == that.hashCode())\n"
+            + "          && (this.a() == that.a())\n"
+            + "          && ((this.b() == null) ? (that.b() == null) : this.b().equals(that.b()));\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    return cachedHashCode;\n"
+            + "  }\n"
+            + "\n"
+            + "  private int computeHashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.a();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= (this.b() == null) ? 0 : this.b().hashCode();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(nullable, cacheHashCode, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void cacheHashCodeEagerlyRecomputesAfterDeserialization() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "import java.io.Serializable;\n"
+            + "import java.util.concurrent.TimeUnit;\n"
+            + "@CacheHashCode(eager = true) @AutoValue\n"
+            + "public abstract class Test implements Serializable {\n"
+            + "public abstract String a();\n"
+            + "public abstract TimeUnit b();\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "import java.util.concurrent.TimeUnit;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  private final int cachedHashCode;\n"
+            + "\n"
+            + "  AutoValue_Test(String a, TimeUnit b) {\n"
+            + "    super(a, b);\n"
+            + "    this.cachedHashCode = computeHashCode();\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.hashCode() == that.hashCode())\n"
+            + "          && (this.b() == that.b())\n"
+            + "          && (this.a().equals(that.a()));\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    return cachedHashCode;\n"
+            + "  }\n"
+            + "\n"
+            + "  private int computeHashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.a().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.b().hashCode();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  private Object readResolve() {\n"
+            + "    return new AutoValue_Test(this.a(), this.b());\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(cacheHashCode, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void nestedCachedHashValuesCompareHashCodesFirst() {
+    JavaFileObject inner = JavaFileObjects.forSourceString("test.Inner", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@CacheHashCode @AutoValue public abstract class Inner {\n"
+            + "public abstract String name();\n"
+            + "}\n"
+    );
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@CacheHashCode @AutoValue public abstract class Test {\n"
+            + "public abstract int a();\n"
+            + "public abstract Inner b();\n"
+            + "@Nullable public abstract Inner c();\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  private transient int cachedHashCode;\n"
+            + "\n"
+            + "  AutoValue_Test(int a, Inner b, Inner c) {\n"
+            + "    super(a, b, c);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.hashCode() == that.hashCode())\n"
+            + "          && (this.a() == that.a())\n"
+            + "          && (this.b().hashCode() == that.b().hashCode() && this.b().equals(that.b()))\n"
+            + "          && ((this.c() == null) ? (that.c() == null) : (that.c() != null && this.c().hashCode() == that.c().hashCode() && this.c().equals(that.c())));\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = cachedHashCode;\n"
+            + "    if (h == 0) {\n"
+            + "      h = computeHashCode();\n"
+            + "      cachedHashCode = h;\n"
+            + "    }\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  private int computeHashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.a();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.b().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= (this.c() == null) ? 0 : this.c().hashCode();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(nullable, cacheHashCode, inner, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void equalsComparesCheapestPropertiesFirst() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "import java.util.List;\n"
+            + "import java.util.concurrent.TimeUnit;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract Object a();\n"
+            + "public abstract List<String> b();\n"
+            + "public abstract byte[] c();\n"
+            + "public abstract String d();\n"
+            + "public abstract Integer e();\n"
+            + "public abstract TimeUnit f();\n"
+            + "public abstract long g();\n"
+            + "@IgnoreHashEquals public abstract int h();\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.Integer;\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "import java.util.Arrays;\n"
+            + "import java.util.List;\n"
+            + "import java.util.concurrent.TimeUnit;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  AutoValue_Test(Object a, List<String> b, byte[] c, String d, Integer e, TimeUnit f, long g, int h) {\n"
+            + "    super(a, b, c, d, e, f, g, h);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.f() == that.f())\n"
+            + "          && (this.g() == that.g())\n"
+            + "          && (this.d().length() == that.d().length())\n"
+            + "          && (this.c().length == that.c().length)\n"
+            + "          && (this.b().size() == that.b().size())\n"
+            + "          && (this.d().equals(that.d()))\n"
+            + "          && (this.e().equals(that.e()))\n"
+            + "          && (Arrays.equals(this.c(), that.c()))\n"
+            + "          && (this.b().equals(that.b()))\n"
+            + "          && (this.a().equals(that.a()));\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.a().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.b().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= Arrays.hashCode(this.c());\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.d().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.e().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.f().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= (this.g() >>> 32) ^ this.g();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(ignoreHashEquals, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void enumAndIdentityPropertiesAreComparedByReference() {
+    JavaFileObject identityHashEquals = JavaFileObjects.forSourceString("test.IdentityHashEquals", ""
+            + "package test;\n"
+            + "public @interface IdentityHashEquals {\n"
+            + "}");
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "import java.util.concurrent.TimeUnit;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract String a();\n"
+            + "@Nullable public abstract TimeUnit b();\n"
+            + "@IdentityHashEquals public abstract Object c();\n"
+            + "@IdentityHashEquals @Nullable public abstract String d();\n"
+            + "@IdentityHashEquals public abstract int e();\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "import java.lang.System;\n"
+            + "import java.util.concurrent.TimeUnit;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  AutoValue_Test(String a, TimeUnit b, Object c, String d, int e) {\n"
+            + "    super(a, b, c, d, e);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.b() == that.b())\n"
+            + "          && (this.c() == that.c())\n"
+            + "          && (this.d() == that.d())\n"
+            + "          && (this.e() == that.e())\n"
+            + "          && (this.a().equals(that.a()));\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.a().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= (this.b() == null) ? 0 : this.b().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= System.identityHashCode(this.c());\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= System.identityHashCode(this.d());\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.e();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(identityHashEquals, nullable, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void equalsOrderOptionKeepsDeclarationOrder() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract int[] a();\n"
+            + "public abstract String b();\n"
+            + "public abstract int c();\n"
+            + "@IgnoreHashEquals public abstract int d();\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "import java.util.Arrays;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  AutoValue_Test(int[] a, String b, int c, int d) {\n"
+            + "    super(a, b, c, d);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.a().length == that.a().length)\n"
+            + "          && (this.b().length() == that.b().length())\n"
+            + "          && (Arrays.equals(this.a(), that.a()))\n"
+            + "          && (this.b().equals(that.b()))\n"
+            + "          && (this.c() == that.c());\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= Arrays.hashCode(this.a());\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.b().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.c();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(ignoreHashEquals, source))
+            .withCompilerOptions(java8("-AignoreHashEquals.equalsOrder=declaration"))
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void equalsProfileOrdersMostOftenDifferingPropertiesFirst() throws IOException {
+    File profile = temporaryFolder.newFile("equals.profile");
+    Files.write(profile.toPath(), Arrays.asList(
+        "# First differing property in equals(), per class.",
+        "test.Test#b=10",
+        "test.Test#c=3",
+        "test.Other#a=100"), Charset.forName("UTF-8"));
+
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract int a();\n"
+            + "public abstract String b();\n"
+            + "public abstract long c();\n"
+            + "@IgnoreHashEquals public abstract int d();\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  AutoValue_Test(int a, String b, long c, int d) {\n"
+            + "    super(a, b, c, d);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.b().equals(that.b()))\n"
+            + "          && (this.c() == that.c())\n"
+            + "          && (this.a() == that.a());\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.a();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.b().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= (this.c() >>> 32) ^ this.c();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(ignoreHashEquals, source))
+            .withCompilerOptions(java8("-AignoreHashEquals.equalsProfile=" + profile.getAbsolutePath()))
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void recordEqualsProfile() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@CacheHashCode @AutoValue public abstract class Test {\n"
+            + "public abstract String a();\n"
+            + "public abstract int b();\n"
+            + "@IgnoreHashEquals public abstract int c();\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import com.github.reggar.ignorehashequals.runtime.EqualsProfile;\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  private static final EqualsProfile EQUALS_PROFILE = EqualsProfile.register(\"test.Test\", \"b\", \"a\");\n"
+            + "\n"
+            + "  private transient int cachedHashCode;\n"
+            + "\n"
+            + "  AutoValue_Test(String a, int b, int c) {\n"
+            + "    super(a, b, c);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      if (!(this.b() == that.b())) {\n"
+            + "        EQUALS_PROFILE.recordMismatch(0);\n"
+            + "        return false;\n"
+            + "      }\n"
+            + "      if (!(this.a().equals(that.a()))) {\n"
+            + "        EQUALS_PROFILE.recordMismatch(1);\n"
+            + "        return false;\n"
+            + "      }\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = cachedHashCode;\n"
+            + "    if (h == 0) {\n"
+            + "      h = computeHashCode();\n"
+            + "      cachedHashCode = h;\n"
+            + "    }\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  private int computeHashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.a().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.b();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(ignoreHashEquals, cacheHashCode, source))
+            .withCompilerOptions(java8("-AignoreHashEquals.recordEqualsProfile=true"))
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void instrumentOption() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract String a();\n"
+            + "public abstract int b();\n"
+            + "@IgnoreHashEquals public abstract int c();\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import com.github.reggar.ignorehashequals.runtime.HashEqualsCounters;\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  private static final HashEqualsCounters HASH_EQUALS_COUNTERS = HashEqualsCounters.register(\"test.Test\", \"b\", \"a\");\n"
+            + "\n"
+            + "  AutoValue_Test(String a, int b, int c) {\n"
+            + "    super(a, b, c);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      if (!(this.b() == that.b())) {\n"
+            + "        HASH_EQUALS_COUNTERS.recordUnequal(0);\n"
+            + "        return false;\n"
+            + "      }\n"
+            + "      if (!(this.a().equals(that.a()))) {\n"
+            + "        HASH_EQUALS_COUNTERS.recordUnequal(1);\n"
+            + "        return false;\n"
+            + "      }\n"
+            + "      HASH_EQUALS_COUNTERS.recordEqual();\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    HASH_EQUALS_COUNTERS.recordHashCode();\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.a().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.b();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(ignoreHashEquals, source))
+            .withCompilerOptions(java8("-AignoreHashEquals.instrument=true"))
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void instrumentOptionWithCachedHashCodeCountsCollisions() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@CacheHashCode @AutoValue public abstract class Test {\n"
+            + "public abstract String a();\n"
+            + "public abstract int b();\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import com.github.reggar.ignorehashequals.runtime.HashEqualsCounters;\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  private static final HashEqualsCounters HASH_EQUALS_COUNTERS = HashEqualsCounters.register(\"test.Test\", \"b\", \"a\");\n"
+            + "\n"
+            + "  private transient int cachedHashCode;\n"
+            + "\n"
+            + "  AutoValue_Test(String a, int b) {\n"
+            + "    super(a, b);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      boolean sameHash = this.hashCode() == that.hashCode();\n"
+            + "      if (!(this.b() == that.b())) {\n"
+            + "        HASH_EQUALS_COUNTERS.recordUnequal(0, sameHash);\n"
+            + "        return false;\n"
+            + "      }\n"
+            + "      if (!(this.a().equals(that.a()))) {\n"
+            + "        HASH_EQUALS_COUNTERS.recordUnequal(1, sameHash);\n"
+            + "        return false;\n"
+            + "      }\n"
+            + "      HASH_EQUALS_COUNTERS.recordEqual();\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    HASH_EQUALS_COUNTERS.recordHashCode();\n"
+            + "    int h = cachedHashCode;\n"
+            + "    if (h == 0) {\n"
+            + "      h = computeHashCode();\n"
+            + "      cachedHashCode = h;\n"
+            + "    }\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  private int computeHashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.a().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.b();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(cacheHashCode, source))
+            .withCompilerOptions(java8("-AignoreHashEquals.instrument=true"))
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void murmur3HashStrategyOption() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract int a();\n"
+            + "public abstract long b();\n"
+            + "public abstract boolean c();\n"
+            + "@IgnoreHashEquals public abstract String d();\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  AutoValue_Test(int a, long b, boolean c, String d) {\n"
+            + "    super(a, b, c, d);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.a() == that.a())\n"
+            + "          && (this.b() == that.b())\n"
+            + "          && (this.c() == that.c());\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 0;\n"
+            + "    h ^= Integer.rotateLeft((int) (this.a()) * 0xcc9e2d51, 15) * 0x1b873593;\n"
+            + "    h = Integer.rotateLeft(h, 13) * 5 + 0xe6546b64;\n"
+            + "    h ^= Integer.rotateLeft((int) ((this.b() >>> 32) ^ this.b()) * 0xcc9e2d51, 15) * 0x1b873593;\n"
+            + "    h = Integer.rotateLeft(h, 13) * 5 + 0xe6546b64;\n"
+            + "    h ^= Integer.rotateLeft((int) (this.c() ? 1231 : 1237) * 0xcc9e2d51, 15) * 0x1b873593;\n"
+            + "    h = Integer.rotateLeft(h, 13) * 5 + 0xe6546b64;\n"
+            + "    h ^= 12;\n"
+            + "    h ^= h >>> 16;\n"
+            + "    h *= 0x85ebca6b;\n"
+            + "    h ^= h >>> 13;\n"
+            + "    h *= 0xc2b2ae35;\n"
+            + "    h ^= h >>> 16;\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(ignoreHashEquals, source))
+            .withCompilerOptions(java8("-AignoreHashEquals.hashStrategy=murmur3"))
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void xxHashStrategyAnnotation() {
+    JavaFileObject hashStrategy = JavaFileObjects.forSourceString("test.HashStrategy", ""
+            + "package test;\n"
+            + "import java.lang.annotation.Retention;\n"
+            + "import java.lang.annotation.Target;\n"
+            + "import static java.lang.annotation.ElementType.TYPE;\n"
+            + "import static java.lang.annotation.RetentionPolicy.SOURCE;\n"
+            + "@Retention(SOURCE)\n"
+            + "@Target(TYPE)\n"
+            + "public @interface HashStrategy {\n"
+            + "  Kind value();\n"
+            + "  enum Kind { AUTO_VALUE, MURMUR3, XXHASH }\n"
+            + "}");
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@HashStrategy(HashStrategy.Kind.XXHASH)\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract int a();\n"
+            + "@Nullable public abstract String b();\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  AutoValue_Test(int a, String b) {\n"
+            + "    super(a, b);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.a() == that.a())\n"
+            + "          && ((this.b() == null) ? (that.b() == null) : this.b().equals(that.b()));\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 0x165667b1 + 8;\n"
+            + "    h += (int) (this.a()) * 0xc2b2ae3d;\n"
+            + "    h = Integer.rotateLeft(h, 17) * 0x27d4eb2f;\n"
+            + "    h += (int) ((this.b() == null) ? 0 : this.b().hashCode()) * 0xc2b2ae3d;\n"
+            + "    h = Integer.rotateLeft(h, 17) * 0x27d4eb2f;\n"
+            + "    h ^= h >>> 15;\n"
+            + "    h *= 0x85ebca77;\n"
+            + "    h ^= h >>> 13;\n"
+            + "    h *= 0xc2b2ae3d;\n"
+            + "    h ^= h >>> 16;\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(hashStrategy, nullable, source))
+            .withCompilerOptions(java8("-AignoreHashEquals.hashStrategy=murmur3"))
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void longHashCode() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract int a();\n"
+            + "public abstract double b();\n"
+            + "@Nullable public abstract String c();\n"
+            + "public abstract int[] d();\n"
+            + "@IgnoreHashEquals public abstract long e();\n"
+            + "public abstract long longHashCode();\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "import java.util.Arrays;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  AutoValue_Test(int a, double b, String c, int[] d, long e) {\n"
+            + "    super(a, b, c, d, e);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.a() == that.a())\n"
+            + "          && (Double.doubleToLongBits(this.b()) == Double.doubleToLongBits(that.b()))\n"
+            + "          && ((this.c() == null) ? (that.c() == null) : this.c().equals(that.c()))\n"
+            + "          && (Arrays.equals(this.d(), that.d()));\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.a();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= (Double.doubleToLongBits(this.b()) >>> 32) ^ Double.doubleToLongBits(this.b());\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= (this.c() == null) ? 0 : this.c().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= Arrays.hashCode(this.d());\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final long longHashCode() {\n"
+            + "    long h = 0;\n"
+            + "    h = Long.rotateLeft((h ^ this.a()) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    h = Long.rotateLeft((h ^ Double.doubleToLongBits(this.b())) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    h = Long.rotateLeft((h ^ (this.c() == null ? 0 : longHash(this.c()))) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    h = Long.rotateLeft((h ^ longHash(this.d())) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    h ^= 4;\n"
+            + "    h ^= h >>> 33;\n"
+            + "    h *= 0xff51afd7ed558ccdL;\n"
+            + "    h ^= h >>> 33;\n"
+            + "    h *= 0xc4ceb9fe1a85ec53L;\n"
+            + "    h ^= h >>> 33;\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  private static long longHash(String value) {\n"
+            + "    int length = value.length();\n"
+            + "    long h = length;\n"
+            + "    for (int i = 0; i < length; i++) {\n"
+            + "      h = Long.rotateLeft((h ^ value.charAt(i)) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    }\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  private static long longHash(int[] value) {\n"
+            + "    long h = value.length;\n"
+            + "    for (int element : value) {\n"
+            + "      h = Long.rotateLeft((h ^ element) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    }\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(ignoreHashEquals, nullable, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void longHashCodeOfCollections() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "import java.util.List;\n"
+            + "import java.util.Set;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract List<String> a();\n"
+            + "public abstract Set<Integer> b();\n"
+            + "public abstract List<Long> c();\n"
+            + "public abstract List<? extends Object> d();\n"
+            + "public abstract long longHashCode();\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.Integer;\n"
+            + "import java.lang.Long;\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "import java.util.List;\n"
+            + "import java.util.Set;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  AutoValue_Test(List<String> a, Set<Integer> b, List<Long> c, List<?> d) {\n"
+            + "    super(a, b, c, d);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.a().size() == that.a().size())\n"
+            + "          && (this.b().size() == that.b().size())\n"
+            + "          && (this.c().size() == that.c().size())\n"
+            + "          && (this.d().size() == that.d().size())\n"
+            + "          && (this.a().equals(that.a()))\n"
+            + "          && (this.b().equals(that.b()))\n"
+            + "          && (this.c().equals(that.c()))\n"
+            + "          && (this.d().equals(that.d()));\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.a().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.b().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.c().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.d().hashCode();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final long longHashCode() {\n"
+            + "    long h = 0;\n"
+            + "    h = Long.rotateLeft((h ^ longHash(this.a())) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    h = Long.rotateLeft((h ^ longHash(this.b())) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    h = Long.rotateLeft((h ^ longHash2(this.c())) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    h = Long.rotateLeft((h ^ longHash3(this.d())) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    h ^= 4;\n"
+            + "    h ^= h >>> 33;\n"
+            + "    h *= 0xff51afd7ed558ccdL;\n"
+            + "    h ^= h >>> 33;\n"
+            + "    h *= 0xc4ceb9fe1a85ec53L;\n"
+            + "    h ^= h >>> 33;\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  private static long longHash(String value) {\n"
+            + "    int length = value.length();\n"
+            + "    long h = length;\n"
+            + "    for (int i = 0; i < length; i++) {\n"
+            + "      h = Long.rotateLeft((h ^ value.charAt(i)) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    }\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  private static long longHash(List<String> value) {\n"
+            + "    long h = value.size();\n"
+            + "    for (String element : value) {\n"
+            + "      h = Long.rotateLeft((h ^ (element == null ? 0 : longHash(element))) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    }\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  private static long longHash(Set<Integer> value) {\n"
+            + "    long h = value.size();\n"
+            + "    for (Integer element : value) {\n"
+            + "      h += Long.rotateLeft((element == null ? 0 : element) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    }\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  private static long longHash2(List<Long> value) {\n"
+            + "    long h = value.size();\n"
+            + "    for (Long element : value) {\n"
+            + "      h = Long.rotateLeft((h ^ (element == null ? 0 : element)) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    }\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  private static long longHash3(List<?> value) {\n"
+            + "    long h = value.size();\n"
+            + "    for (Object element : value) {\n"
+            + "      h = Long.rotateLeft((h ^ (element == null ? 0 : element.hashCode())) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    }\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .withWarningContaining("longHashCode() hashes d of type java.util.List<?> through its"
+                + " 32-bit hashCode().");
+  }
+
+  @Test public void longHashCodeSetByBuilderIsProperty() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract String a();\n"
+            + "@IgnoreHashEquals public abstract int b();\n"
+            + "public abstract long longHashCode();\n"
+            + "@AutoValue.Builder public abstract static class Builder {\n"
+            + "public abstract Builder a(String a);\n"
+            + "public abstract Builder b(int b);\n"
+            + "public abstract Builder longHashCode(long longHashCode);\n"
+            + "public abstract Test build();\n"
+            + "}\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  AutoValue_Test(String a, int b, long longHashCode) {\n"
+            + "    super(a, b, longHashCode);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.longHashCode() == that.longHashCode())\n"
+            + "          && (this.a().equals(that.a()));\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.a().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= (this.longHashCode() >>> 32) ^ this.longHashCode();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(ignoreHashEquals, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void hashInto() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "import com.google.common.hash.PrimitiveSink;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract int a();\n"
+            + "@Nullable public abstract String b();\n"
+            + "public abstract long[] c();\n"
+            + "@IgnoreHashEquals public abstract boolean d();\n"
+            + "public abstract void hashInto(PrimitiveSink sink);\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import com.google.common.hash.PrimitiveSink;\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "import java.util.Arrays;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  AutoValue_Test(int a, String b, long[] c, boolean d) {\n"
+            + "    super(a, b, c, d);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.a() == that.a())\n"
+            + "          && ((this.b() == null) ? (that.b() == null) : this.b().equals(that.b()))\n"
+            + "          && (Arrays.equals(this.c(), that.c()));\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.a();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= (this.b() == null) ? 0 : this.b().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= Arrays.hashCode(this.c());\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final void hashInto(PrimitiveSink sink) {\n"
+            + "    sink.putInt(this.a());\n"
+            + "    if (this.b() == null) {\n"
+            + "      sink.putBoolean(false);\n"
+            + "    } else {\n"
+            + "      sink.putBoolean(true);\n"
+            + "      sink.putInt(this.b().length());\n"
+            + "      sink.putUnencodedChars(this.b());\n"
+            + "    }\n"
+            + "    sink.putInt(this.c().length);\n"
+            + "    for (long element : this.c()) {\n"
+            + "      sink.putLong(element);\n"
+            + "    }\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(ignoreHashEquals, nullable, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void hashIntoSinkWithoutPutMethodsFails() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract int a();\n"
+            + "public abstract void hashInto(StringBuilder sink);\n"
+            + "}\n"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .failsToCompile()
+            .withErrorContaining("needs StringBuilder to have a putInt method");
+  }
+
+  @Test public void stableHash() {
+    JavaFileObject point = JavaFileObjects.forSourceString("test.Point", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Point {\n"
+            + "public abstract double x();\n"
+            + "public abstract double y();\n"
+            + "public abstract long stableHash64();\n"
+            + "}\n"
+    );
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "import java.util.List;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public enum Color { RED, GREEN }\n"
+            + "public abstract Color a();\n"
+            + "@Nullable public abstract String b();\n"
+            + "public abstract int c();\n"
+            + "public abstract List<String> d();\n"
+            + "public abstract Point e();\n"
+            + "@IgnoreHashEquals public abstract Object f();\n"
+            + "public abstract long stableHash64();\n"
+            + "public abstract int stableHash();\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.CharSequence;\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "import java.util.List;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  AutoValue_Test(Test.Color a, String b, int c, List<String> d, Point e, Object f) {\n"
+            + "    super(a, b, c, d, e, f);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.a() == that.a())\n"
+            + "          && (this.c() == that.c())\n"
+            + "          && (this.d().size() == that.d().size())\n"
+            + "          && ((this.b() == null) ? (that.b() == null) : this.b().equals(that.b()))\n"
+            + "          && (this.d().equals(that.d()))\n"
+            + "          && (this.e().equals(that.e()));\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.a().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= (this.b() == null) ? 0 : this.b().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.c();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.d().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.e().hashCode();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final long stableHash64() {\n"
+            + "    long h = 0;\n"
+            + "    h = Long.rotateLeft((h ^ stableHashOf(this.a().name())) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    h = Long.rotateLeft((h ^ (this.b() == null ? 0 : stableHashOf(this.b()))) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    h = Long.rotateLeft((h ^ this.c()) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    h = Long.rotateLeft((h ^ stableHashOf(this.d())) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    h = Long.rotateLeft((h ^ this.e().stableHash64()) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    h ^= 5;\n"
+            + "    h ^= h >>> 33;\n"
+            + "    h *= 0xff51afd7ed558ccdL;\n"
+            + "    h ^= h >>> 33;\n"
+            + "    h *= 0xc4ceb9fe1a85ec53L;\n"
+            + "    h ^= h >>> 33;\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int stableHash() {\n"
+            + "    long h = stableHash64();\n"
+            + "    return (int) (h ^ (h >>> 32));\n"
+            + "  }\n"
+            + "\n"
+            + "  private static long stableHashOf(CharSequence value) {\n"
+            + "    int length = value.length();\n"
+            + "    long h = length;\n"
+            + "    for (int i = 0; i < length; i++) {\n"
+            + "      h = Long.rotateLeft((h ^ value.charAt(i)) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    }\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  private static long stableHashOf(List<String> value) {\n"
+            + "    long h = value.size();\n"
+            + "    for (String element : value) {\n"
+            + "      h = Long.rotateLeft((h ^ (element == null ? 0 : stableHashOf(element))) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    }\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(ignoreHashEquals, nullable, point, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void stableHashSetByBuilderIsProperty() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract String a();\n"
+            + "public abstract int stableHash();\n"
+            + "public abstract long stableHash64();\n"
+            + "@AutoValue.Builder public abstract static class Builder {\n"
+            + "public abstract Builder setA(String a);\n"
+            + "public abstract Builder setStableHash(int stableHash);\n"
+            + "public abstract Test build();\n"
+            + "}\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.CharSequence;\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  AutoValue_Test(String a, int stableHash) {\n"
+            + "    super(a, stableHash);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.stableHash() == that.stableHash())\n"
+            + "          && (this.a().equals(that.a()));\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.a().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.stableHash();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final long stableHash64() {\n"
+            + "    long h = 0;\n"
+            + "    h = Long.rotateLeft((h ^ stableHashOf(this.a())) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    h = Long.rotateLeft((h ^ this.stableHash()) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    h ^= 2;\n"
+            + "    h ^= h >>> 33;\n"
+            + "    h *= 0xff51afd7ed558ccdL;\n"
+            + "    h ^= h >>> 33;\n"
+            + "    h *= 0xc4ceb9fe1a85ec53L;\n"
+            + "    h ^= h >>> 33;\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  private static long stableHashOf(CharSequence value) {\n"
+            + "    int length = value.length();\n"
+            + "    long h = length;\n"
+            + "    for (int i = 0; i < length; i++) {\n"
+            + "      h = Long.rotateLeft((h ^ value.charAt(i)) * 0x9e3779b97f4a7c15L, 31);\n"
+            + "    }\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void stableHashOfPropertyWithoutContentHashFails() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract int a();\n"
+            + "public abstract Object b();\n"
+            + "public abstract int stableHash();\n"
+            + "}\n"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .failsToCompile()
+            .withErrorContaining("Property b of type java.lang.Object has no stable hash");
+  }
+
+  @Test public void equalsTyped() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract int a();\n"
+            + "@Nullable public abstract String b();\n"
+            + "@IgnoreHashEquals public abstract long c();\n"
+            + "public abstract boolean equalsTyped(Test that);\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  AutoValue_Test(int a, String b, long c) {\n"
+            + "    super(a, b, c);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      return equalsTyped((Test) o);\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equalsTyped(Test that) {\n"
+            + "    if (that == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (that == null) {\n"
+            + "      return false;\n"
+            + "    }\n"
+            + "    return (this.a() == that.a())\n"
+            + "        && ((this.b() == null) ? (that.b() == null) : this.b().equals(that.b()));\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.a();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= (this.b() == null) ? 0 : this.b().hashCode();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  public static final class HashingStrategy {\n"
+            + "    public static final HashingStrategy INSTANCE = new HashingStrategy();\n"
+            + "    private HashingStrategy() {\n"
+            + "    }\n"
+            + "    public boolean equals(Test a, Test b) {\n"
+            + "      return a == b || (a != null && a.equalsTyped(b));\n"
+            + "    }\n"
+            + "    public int hashCode(Test value) {\n"
+            + "      return value == null ? 0 : value.hashCode();\n"
+            + "    }\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(ignoreHashEquals, nullable, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void hashingStrategyImplementsContainerInterfaces() {
+    JavaFileObject fastutil = JavaFileObjects.forSourceString("it.unimi.dsi.fastutil.Hash", ""
+            + "package it.unimi.dsi.fastutil;\n"
+            + "public interface Hash {\n"
+            + "  interface Strategy<K> {\n"
+            + "    int hashCode(K o);\n"
+            + "    boolean equals(K a, K b);\n"
+            + "  }\n"
+            + "}");
+    JavaFileObject eclipseCollections = JavaFileObjects.forSourceString(
+        "org.eclipse.collections.api.block.HashingStrategy", ""
+            + "package org.eclipse.collections.api.block;\n"
+            + "public interface HashingStrategy<E> extends java.io.Serializable {\n"
+            + "  int computeHashCode(E object);\n"
+            + "  boolean equals(E object1, E object2);\n"
+            + "}");
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract int a();\n"
+            + "public abstract boolean equalsTyped(Test that);\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import it.unimi.dsi.fastutil.Hash;\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  AutoValue_Test(int a) {\n"
+            + "    super(a);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      return equalsTyped((Test) o);\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equalsTyped(Test that) {\n"
+            + "    if (that == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (that == null) {\n"
+            + "      return false;\n"
+            + "    }\n"
+            + "    return (this.a() == that.a());\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.a();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  public static final class HashingStrategy implements Hash.Strategy<Test>, org.eclipse.collections.api.block.HashingStrategy<Test> {\n"
+            + "    public static final HashingStrategy INSTANCE = new HashingStrategy();\n"
+            + "    private HashingStrategy() {\n"
+            + "    }\n"
+            + "    @Override\n"
+            + "    public boolean equals(Test a, Test b) {\n"
+            + "      return a == b || (a != null && a.equalsTyped(b));\n"
+            + "    }\n"
+            + "    @Override\n"
+            + "    public int hashCode(Test value) {\n"
+            + "      return value == null ? 0 : value.hashCode();\n"
+            + "    }\n"
+            + "    @Override\n"
+            + "    public int computeHashCode(Test value) {\n"
+            + "      return hashCode(value);\n"
+            + "    }\n"
+            + "    private Object readResolve() {\n"
+            + "      return INSTANCE;\n"
+            + "    }\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(fastutil, eclipseCollections, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void concurrentCompilationsShareOneExtension() throws Exception {
+    final JavaFileObject ignoring = JavaFileObjects.forSourceString("test.Ignoring", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Ignoring {\n"
+            + "public abstract int a();\n"
+            + "@IgnoreHashEquals public abstract String b();\n"
+            + "}\n"
+    );
+    final JavaFileObject including = JavaFileObjects.forSourceString("test.Including", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Including {\n"
+            + "@IncludeHashEquals public abstract int a();\n"
+            + "public abstract String b();\n"
+            + "}\n"
+    );
+    final JavaFileObject expectedIgnoring = JavaFileObjects.forSourceString("test/AutoValue_Ignoring", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "\n"
+            + "final class AutoValue_Ignoring extends $AutoValue_Ignoring {\n"
+            + "  AutoValue_Ignoring(int a, String b) {\n"
+            + "    super(a, b);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Ignoring) {\n"
+            + "      Ignoring that = (Ignoring) o;\n"
+            + "      return (this.a() == that.a());\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.a();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+    final JavaFileObject expectedIncluding = JavaFileObjects.forSourceString("test/AutoValue_Including", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "\n"
+            + "final class AutoValue_Including extends $AutoValue_Including {\n"
+            + "  AutoValue_Including(int a, String b) {\n"
+            + "    super(a, b);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Including) {\n"
+            + "      Including that = (Including) o;\n"
+            + "      return (this.a() == that.a());\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.a();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+
+    final AutoValueIgnoreHashEqualsExtension extension = new AutoValueIgnoreHashEqualsExtension();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> compilations = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        final boolean ignore = i % 2 == 0;
+        compilations.add(executor.submit(new Runnable() {
+          @Override public void run() {
+            assertAbout(javaSources())
+                .that(ignore
+                    ? Arrays.asList(ignoreHashEquals, ignoring)
+                    : Arrays.asList(includeHashEquals, including))
+                .withCompilerOptions(java8())
+                .processedWith(new AutoValueProcessor(Collections.singletonList(extension)))
+                .compilesWithoutError()
+                .and()
+                .generatesSources(ignore ? expectedIgnoring : expectedIncluding);
+          }
+        }));
+      }
+      for (Future<?> compilation : compilations) {
+        compilation.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test public void statsOption() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract int a();\n"
+            + "@IgnoreHashEquals public abstract String b();\n"
+            + "}\n"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(ignoreHashEquals, source))
+            .withCompilerOptions(java8("-AignoreHashEquals.stats=json"))
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesFileNamed(StandardLocation.SOURCE_OUTPUT, "",
+                "ignore-hash-equals/stats/test.Test.json");
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(ignoreHashEquals, source))
+            .withCompilerOptions(java8("-AignoreHashEquals.stats=notes"))
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .withNoteContaining("ignoreHashEquals: test.Test applicable=true properties=2"
+                + " included=1 ignored=1");
+  }
+
+  @Test public void internAnnotation() {
+    JavaFileObject intern = JavaFileObjects.forSourceString("test.Intern", ""
+            + "package test;\n"
+            + "import java.lang.annotation.Retention;\n"
+            + "import java.lang.annotation.Target;\n"
+            + "import static java.lang.annotation.ElementType.TYPE;\n"
+            + "import static java.lang.annotation.RetentionPolicy.SOURCE;\n"
+            + "@Retention(SOURCE)\n"
+            + "@Target(TYPE)\n"
+            + "public @interface Intern {\n"
+            + "}");
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@Intern\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract int a();\n"
+            + "@IgnoreHashEquals public abstract String b();\n"
+            + "static Test create(int a, String b) {\n"
+            + "  return AutoValue_Test.intern(new AutoValue_Test(a, b));\n"
+            + "}\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import com.github.reggar.ignorehashequals.runtime.WeakInterner;\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  private static final WeakInterner<Test> INTERNER = new WeakInterner<>();\n"
+            + "\n"
+            + "  AutoValue_Test(int a, String b) {\n"
+            + "    super(a, b);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.a() == that.a());\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.a();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  static Test intern(Test value) {\n"
+            + "    return INTERNER.intern(value);\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(ignoreHashEquals, intern, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void internOnGenericClassFails() {
+    JavaFileObject intern = JavaFileObjects.forSourceString("test.Intern", ""
+            + "package test;\n"
+            + "public @interface Intern {\n"
+            + "}");
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@Intern\n"
+            + "@AutoValue public abstract class Test<T> {\n"
+            + "public abstract T a();\n"
+            + "}\n"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(intern, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .failsToCompile()
+            .withErrorContaining("@Intern is not supported on generic classes");
+  }
+
+  @Test public void internWithTakenNameFails() {
+    JavaFileObject intern = JavaFileObjects.forSourceString("test.Intern", ""
+            + "package test;\n"
+            + "public @interface Intern {\n"
+            + "}");
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@Intern\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract long a();\n"
+            + "public Test intern() {\n"
+            + "  return this;\n"
+            + "}\n"
+            + "}\n"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(intern, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .failsToCompile()
+            .withErrorContaining("@Intern generates intern(), but Test already has a member named"
+                + " intern.");
+  }
+
+  @Test public void hashEqualsKeyAnnotation() {
+    JavaFileObject hashEqualsKey = JavaFileObjects.forSourceString("test.HashEqualsKey", ""
+            + "package test;\n"
+            + "import java.lang.annotation.Retention;\n"
+            + "import java.lang.annotation.Target;\n"
+            + "import static java.lang.annotation.ElementType.TYPE;\n"
+            + "import static java.lang.annotation.RetentionPolicy.SOURCE;\n"
+            + "@Retention(SOURCE)\n"
+            + "@Target(TYPE)\n"
+            + "public @interface HashEqualsKey {\n"
+            + "}");
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@HashEqualsKey\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract long a();\n"
+            + "@IgnoreHashEquals public abstract byte[] b();\n"
+            + "@Nullable public abstract String c();\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  AutoValue_Test(long a, byte[] b, String c) {\n"
+            + "    super(a, b, c);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.a() == that.a())\n"
+            + "          && ((this.c() == null) ? (that.c() == null) : this.c().equals(that.c()));\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= (this.a() >>> 32) ^ this.a();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= (this.c() == null) ? 0 : this.c().hashCode();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  public final Key key() {\n"
+            + "    return new Key(hashCode(), a(), c());\n"
+            + "  }\n"
+            + "\n"
+            + "  static Key keyOf(Test value) {\n"
+            + "    return ((AutoValue_Test) value).key();\n"
+            + "  }\n"
+            + "\n"
+            + "  public static final class Key {\n"
+            + "    private final int hashCode;\n"
+            + "    private final long a;\n"
+            + "    private final String c;\n"
+            + "    Key(int hashCode, long a, String c) {\n"
+            + "      this.hashCode = hashCode;\n"
+            + "      this.a = a;\n"
+            + "      this.c = c;\n"
+            + "    }\n"
+            + "    public long a() {\n"
+            + "      return a;\n"
+            + "    }\n"
+            + "    public String c() {\n"
+            + "      return c;\n"
+            + "    }\n"
+            + "    @Override\n"
+            + "    public final boolean equals(Object o) {\n"
+            + "      if (o == this) {\n"
+            + "        return true;\n"
+            + "      }\n"
+            + "      if (o instanceof Key) {\n"
+            + "        Key that = (Key) o;\n"
+            + "        return (this.hashCode() == that.hashCode())\n"
+            + "            && (this.a() == that.a())\n"
+            + "            && ((this.c() == null) ? (that.c() == null) : this.c().equals(that.c()));\n"
+            + "      }\n"
+            + "      return false;\n"
+            + "    }\n"
+            + "    @Override\n"
+            + "    public final int hashCode() {\n"
+            + "      return hashCode;\n"
+            + "    }\n"
+            + "    @Override\n"
+            + "    public String toString() {\n"
+            + "      return \"Key{a=\" + a + \", c=\" + c + \"}\";\n"
+            + "    }\n"
+            + "  }\n"
+            + "}"
+
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(ignoreHashEquals, nullable, hashEqualsKey, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void hashEqualsKeyWithTakenNameFails() {
+    JavaFileObject hashEqualsKey = JavaFileObjects.forSourceString("test.HashEqualsKey", ""
+            + "package test;\n"
+            + "public @interface HashEqualsKey {\n"
+            + "}");
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@HashEqualsKey\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract String key();\n"
+            + "public abstract int b();\n"
+            + "}\n"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(hashEqualsKey, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .failsToCompile()
+            .withErrorContaining("@HashEqualsKey generates key(), keyOf() and Key, but Test already"
+                + " has a member named key.");
+  }
+
+  @Test public void hashEqualsComparatorAnnotation() {
+    JavaFileObject hashEqualsComparator =
+        JavaFileObjects.forSourceString("test.HashEqualsComparator", ""
+            + "package test;\n"
+            + "import java.lang.annotation.Retention;\n"
+            + "import java.lang.annotation.Target;\n"
+            + "import static java.lang.annotation.ElementType.TYPE;\n"
+            + "import static java.lang.annotation.RetentionPolicy.SOURCE;\n"
+            + "@Retention(SOURCE)\n"
+            + "@Target(TYPE)\n"
+            + "public @interface HashEqualsComparator {\n"
+            + "}");
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@HashEqualsComparator\n"
+            + "@AutoValue public abstract class Test implements Comparable<Test> {\n"
+            + "public abstract long a();\n"
+            + "@IgnoreHashEquals public abstract java.util.List<String> b();\n"
+            + "@Nullable public abstract String c();\n"
+            + "public abstract double d();\n"
+            + "public abstract byte[] e();\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.Byte;\n"
+            + "import java.lang.Double;\n"
+            + "import java.lang.Long;\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "import java.util.Arrays;\n"
+            + "import java.util.Comparator;\n"
+            + "import java.util.List;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  public static final Comparator<Test> COMPARATOR = new Comparator<Test>() {\n"
+            + "    @Override\n"
+            + "    public int compare(Test a, Test b) {\n"
+            + "      int c = Long.compare(a.a(), b.a());\n"
+            + "      if (c != 0) {\n"
+            + "        return c;\n"
+            + "      }\n"
+            + "      c = a.c() == null ? (b.c() == null ? 0 : -1) : (b.c() == null ? 1 : a.c().compareTo(b.c()));\n"
+            + "      if (c != 0) {\n"
+            + "        return c;\n"
+            + "      }\n"
+            + "      c = Double.compare(a.d(), b.d());\n"
+            + "      if (c != 0) {\n"
+            + "        return c;\n"
+            + "      }\n"
+            + "      return compareArrays(a.e(), b.e());\n"
+            + "    }\n"
+            + "  };\n"
+            + "\n"
+            + "  AutoValue_Test(long a, List<String> b, String c, double d, byte[] e) {\n"
+            + "    super(a, b, c, d, e);\n"
+            + "  }\n"
+            + "\n"
+            + "  private static int compareArrays(byte[] a, byte[] b) {\n"
+            + "    int length = Math.min(a.length, b.length);\n"
+            + "    for (int i = 0; i < length; i++) {\n"
+            + "      int c = Byte.compare(a[i], b[i]);\n"
+            + "      if (c != 0) {\n"
+            + "        return c;\n"
+            + "      }\n"
+            + "    }\n"
+            + "    return Integer.compare(a.length, b.length);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int compareTo(Test that) {\n"
+            + "    return COMPARATOR.compare(this, that);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.a() == that.a())\n"
+            + "          && (Double.doubleToLongBits(this.d()) == Double.doubleToLongBits(that.d()))\n"
+            + "          && ((this.c() == null) ? (that.c() == null) : this.c().equals(that.c()))\n"
+            + "          && (Arrays.equals(this.e(), that.e()));\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= (this.a() >>> 32) ^ this.a();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= (this.c() == null) ? 0 : this.c().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= (Double.doubleToLongBits(this.d()) >>> 32) ^ Double.doubleToLongBits(this.d());\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= Arrays.hashCode(this.e());\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(ignoreHashEquals, nullable, hashEqualsComparator, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void hashEqualsComparatorRejectsUnorderedProperty() {
+    JavaFileObject hashEqualsComparator =
+        JavaFileObjects.forSourceString("test.HashEqualsComparator", ""
+            + "package test;\n"
+            + "import java.lang.annotation.Retention;\n"
+            + "import java.lang.annotation.Target;\n"
+            + "import static java.lang.annotation.ElementType.TYPE;\n"
+            + "import static java.lang.annotation.RetentionPolicy.SOURCE;\n"
+            + "@Retention(SOURCE)\n"
+            + "@Target(TYPE)\n"
+            + "public @interface HashEqualsComparator {\n"
+            + "}");
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@HashEqualsComparator\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract long a();\n"
+            + "public abstract java.util.List<String> b();\n"
+            + "}\n"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(hashEqualsComparator, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .failsToCompile()
+            .withErrorContaining("Property b of type java.util.List<java.lang.String> is not Comparable");
+  }
+
+  @Test public void hashEqualsComparatorRejectsIdentityProperty() {
+    JavaFileObject hashEqualsComparator =
+        JavaFileObjects.forSourceString("test.HashEqualsComparator", ""
+            + "package test;\n"
+            + "import java.lang.annotation.Retention;\n"
+            + "import java.lang.annotation.Target;\n"
+            + "import static java.lang.annotation.ElementType.TYPE;\n"
+            + "import static java.lang.annotation.RetentionPolicy.SOURCE;\n"
+            + "@Retention(SOURCE)\n"
+            + "@Target(TYPE)\n"
+            + "public @interface HashEqualsComparator {\n"
+            + "}");
+    JavaFileObject identityHashEquals = JavaFileObjects.forSourceString("test.IdentityHashEquals", ""
+            + "package test;\n"
+            + "public @interface IdentityHashEquals {\n"
+            + "}");
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@HashEqualsComparator\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract long a();\n"
+            + "@IdentityHashEquals public abstract String b();\n"
+            + "}\n"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(hashEqualsComparator, identityHashEquals, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .failsToCompile()
+            .withErrorContaining("Property b is compared by identity");
+  }
+
+  @Test public void charSequenceAndByteBufferProperties() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "import java.nio.ByteBuffer;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract CharSequence name();\n"
+            + "@Nullable public abstract CharSequence alias();\n"
+            + "public abstract ByteBuffer data();\n"
+            + "@IgnoreHashEquals public abstract int ignored();\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.CharSequence;\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.nio.ByteBuffer;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  AutoValue_Test(CharSequence name, CharSequence alias, ByteBuffer data, int ignored) {\n"
+            + "    super(name, alias, data, ignored);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.name().length() == that.name().length())\n"
+            + "          && (this.data().remaining() == that.data().remaining())\n"
+            + "          && (charSequenceEquals(this.name(), that.name()))\n"
+            + "          && (charSequenceEquals(this.alias(), that.alias()))\n"
+            + "          && (this.data().equals(that.data()));\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= charSequenceHashCode(this.name());\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= (this.alias() == null) ? 0 : charSequenceHashCode(this.alias());\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.data().hashCode();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  private static boolean charSequenceEquals(CharSequence a, CharSequence b) {\n"
+            + "    if (a == b) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (a == null || b == null || a.length() != b.length()) {\n"
+            + "      return false;\n"
+            + "    }\n"
+            + "    for (int i = 0, length = a.length(); i < length; i++) {\n"
+            + "      if (a.charAt(i) != b.charAt(i)) {\n"
+            + "        return false;\n"
+            + "      }\n"
+            + "    }\n"
+            + "    return true;\n"
+            + "  }\n"
+            + "\n"
+            + "  private static int charSequenceHashCode(CharSequence s) {\n"
+            + "    int h = 0;\n"
+            + "    for (int i = 0, length = s.length(); i < length; i++) {\n"
+            + "      h = 31 * h + s.charAt(i);\n"
+            + "    }\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(ignoreHashEquals, nullable, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void java9SourceUsesJdkHashMethods() {
+    assumeTrue("needs a Java 9 compiler", SourceVersion.latestSupported().ordinal() >= 9);
+
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract long a();\n"
+            + "public abstract double b();\n"
+            + "public abstract float c();\n"
+            + "public abstract boolean d();\n"
+            + "@Nullable public abstract String e();\n"
+            + "public abstract int[] f();\n"
+            + "@IgnoreHashEquals public abstract String g();\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.Boolean;\n"
+            + "import java.lang.Double;\n"
+            + "import java.lang.Float;\n"
+            + "import java.lang.Long;\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "import java.util.Arrays;\n"
+            + "import java.util.Objects;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  AutoValue_Test(long a, double b, float c, boolean d, String e, int[] f, String g) {\n"
+            + "    super(a, b, c, d, e, f, g);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.a() == that.a())\n"
+            + "          && (Double.doubleToLongBits(this.b()) == Double.doubleToLongBits(that.b()))\n"
+            + "          && (Float.floatToIntBits(this.c()) == Float.floatToIntBits(that.c()))\n"
+            + "          && (this.d() == that.d())\n"
+            + "          && (Objects.equals(this.e(), that.e()))\n"
+            + "          && (Arrays.equals(this.f(), that.f()));\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= Long.hashCode(this.a());\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= Double.hashCode(this.b());\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= Float.hashCode(this.c());\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= Boolean.hashCode(this.d());\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= Objects.hashCode(this.e());\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= Arrays.hashCode(this.f());\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(ignoreHashEquals, nullable, source))
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void hashEqualsGroups() {
+    JavaFileObject hashEqualsGroup = JavaFileObjects.forSourceString("test.HashEqualsGroup", ""
+            + "package test;\n"
+            + "import java.lang.annotation.Retention;\n"
+            + "import static java.lang.annotation.RetentionPolicy.SOURCE;\n"
+            + "@Retention(SOURCE)\n"
+            + "public @interface HashEqualsGroup {\n"
+            + "  String[] value();\n"
+            + "}");
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "@HashEqualsGroup({\"cacheKey\", \"dedup\"}) public abstract String tenant();\n"
+            + "@HashEqualsGroup({\"cacheKey\", \"dedup\"}) public abstract String path();\n"
+            + "@HashEqualsGroup(\"dedup\") public abstract long version();\n"
+            + "@IgnoreHashEquals public abstract long fetchedAt();\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  AutoValue_Test(String tenant, String path, long version, long fetchedAt) {\n"
+            + "    super(tenant, path, version, fetchedAt);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.version() == that.version())\n"
+            + "          && (this.tenant().length() == that.tenant().length())\n"
+            + "          && (this.path().length() == that.path().length())\n"
+            + "          && (this.tenant().equals(that.tenant()))\n"
+            + "          && (this.path().equals(that.path()));\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.tenant().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.path().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= (this.version() >>> 32) ^ this.version();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  static boolean cacheKeyEquals(Test a, Test b) {\n"
+            + "    if (a == b) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (a == null || b == null) {\n"
+            + "      return false;\n"
+            + "    }\n"
+            + "    return (a.tenant().length() == b.tenant().length())\n"
+            + "        && (a.path().length() == b.path().length())\n"
+            + "        && (a.tenant().equals(b.tenant()))\n"
+            + "        && (a.path().equals(b.path()));\n"
+            + "  }\n"
+            + "\n"
+            + "  static int cacheKeyHashCode(Test value) {\n"
+            + "    if (value == null) {\n"
+            + "      return 0;\n"
+            + "    }\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= value.tenant().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= value.path().hashCode();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  static boolean dedupEquals(Test a, Test b) {\n"
+            + "    if (a == b) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (a == null || b == null) {\n"
+            + "      return false;\n"
+            + "    }\n"
+            + "    return (a.version() == b.version())\n"
+            + "        && (a.tenant().length() == b.tenant().length())\n"
+            + "        && (a.path().length() == b.path().length())\n"
+            + "        && (a.tenant().equals(b.tenant()))\n"
+            + "        && (a.path().equals(b.path()));\n"
+            + "  }\n"
+            + "\n"
+            + "  static int dedupHashCode(Test value) {\n"
+            + "    if (value == null) {\n"
+            + "      return 0;\n"
+            + "    }\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= value.tenant().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= value.path().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= (value.version() >>> 32) ^ value.version();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  public static final class CacheKeyHashingStrategy {\n"
+            + "    public static final CacheKeyHashingStrategy INSTANCE = new CacheKeyHashingStrategy();\n"
+            + "    private CacheKeyHashingStrategy() {\n"
+            + "    }\n"
+            + "    public boolean equals(Test a, Test b) {\n"
+            + "      return cacheKeyEquals(a, b);\n"
+            + "    }\n"
+            + "    public int hashCode(Test value) {\n"
+            + "      return cacheKeyHashCode(value);\n"
+            + "    }\n"
+            + "  }\n"
+            + "\n"
+            + "  public static final class DedupHashingStrategy {\n"
+            + "    public static final DedupHashingStrategy INSTANCE = new DedupHashingStrategy();\n"
+            + "    private DedupHashingStrategy() {\n"
+            + "    }\n"
+            + "    public boolean equals(Test a, Test b) {\n"
+            + "      return dedupEquals(a, b);\n"
+            + "    }\n"
+            + "    public int hashCode(Test value) {\n"
+            + "      return dedupHashCode(value);\n"
+            + "    }\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(ignoreHashEquals, hashEqualsGroup, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void hashEqualsGroupStrategyImplementsContainerInterface() {
+    JavaFileObject hashEqualsGroup = JavaFileObjects.forSourceString("test.HashEqualsGroup", ""
+            + "package test;\n"
+            + "import java.lang.annotation.Retention;\n"
+            + "import static java.lang.annotation.RetentionPolicy.SOURCE;\n"
+            + "@Retention(SOURCE)\n"
+            + "public @interface HashEqualsGroup {\n"
+            + "  String[] value();\n"
+            + "}");
+    JavaFileObject fastutil = JavaFileObjects.forSourceString("it.unimi.dsi.fastutil.Hash", ""
+            + "package it.unimi.dsi.fastutil;\n"
+            + "public interface Hash {\n"
+            + "  interface Strategy<K> {\n"
+            + "    int hashCode(K o);\n"
+            + "    boolean equals(K a, K b);\n"
+            + "  }\n"
+            + "}");
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "@HashEqualsGroup(\"tenant\") public abstract String tenant();\n"
+            + "public abstract long version();\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/AutoValue_Test", ""
+            + "package test;\n"
+            + "\n"
+            + "import it.unimi.dsi.fastutil.Hash;\n"
+            + "import java.lang.Object;\n"
+            + "import java.lang.Override;\n"
+            + "import java.lang.String;\n"
+            + "\n"
+            + "final class AutoValue_Test extends $AutoValue_Test {\n"
+            + "  AutoValue_Test(String tenant, long version) {\n"
+            + "    super(tenant, version);\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final boolean equals(Object o) {\n"
+            + "    if (o == this) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (o instanceof Test) {\n"
+            + "      Test that = (Test) o;\n"
+            + "      return (this.version() == that.version())\n"
+            + "          && (this.tenant().equals(that.tenant()));\n"
+            + "    }\n"
+            + "    return false;\n"
+            + "  }\n"
+            + "\n"
+            + "  @Override\n"
+            + "  public final int hashCode() {\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= this.tenant().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= (this.version() >>> 32) ^ this.version();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  static boolean tenantEquals(Test a, Test b) {\n"
+            + "    if (a == b) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (a == null || b == null) {\n"
+            + "      return false;\n"
+            + "    }\n"
+            + "    return (a.tenant().equals(b.tenant()));\n"
+            + "  }\n"
+            + "\n"
+            + "  static int tenantHashCode(Test value) {\n"
+            + "    if (value == null) {\n"
+            + "      return 0;\n"
+            + "    }\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= value.tenant().hashCode();\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "\n"
+            + "  public static final class TenantHashingStrategy implements Hash.Strategy<Test> {\n"
+            + "    public static final TenantHashingStrategy INSTANCE = new TenantHashingStrategy();\n"
+            + "    private TenantHashingStrategy() {\n"
+            + "    }\n"
+            + "    @Override\n"
+            + "    public boolean equals(Test a, Test b) {\n"
+            + "      return tenantEquals(a, b);\n"
+            + "    }\n"
+            + "    @Override\n"
+            + "    public int hashCode(Test value) {\n"
+            + "      return tenantHashCode(value);\n"
+            + "    }\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(hashEqualsGroup, fastutil, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void hashEqualsGroupNameMustBeAnIdentifier() {
+    JavaFileObject hashEqualsGroup = JavaFileObjects.forSourceString("test.HashEqualsGroup", ""
+            + "package test;\n"
+            + "import java.lang.annotation.Retention;\n"
+            + "import static java.lang.annotation.RetentionPolicy.SOURCE;\n"
+            + "@Retention(SOURCE)\n"
+            + "public @interface HashEqualsGroup {\n"
+            + "  String[] value();\n"
+            + "}");
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "@HashEqualsGroup(\"cache-key\") public abstract String tenant();\n"
+            + "public abstract String path();\n"
+            + "}\n"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(hashEqualsGroup, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .failsToCompile()
+            .withErrorContaining(
+                "Property tenant is in group \"cache-key\", which is not a valid Java identifier.");
+  }
+
+  @Test public void annotationsAreMutuallyExclusive() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "@IncludeHashEquals @Nullable public abstract String a();\n"
+            + "@IncludeHashEquals public abstract int b();\n"
+            + "@IgnoreHashEquals public abstract long c();\n"
+            + "public abstract float d();\n"
+            + "public abstract double e();\n"
+            + "public abstract boolean f();\n"
+            + "public abstract int[] g();\n"
+            + "public abstract String h();\n"
+            + "@Nullable public abstract String i();\n"
+            + "}\n"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(includeHashEquals, nullable, source))
+            .withCompilerOptions(java8())
+            .processedWith(new AutoValueProcessor())
+            .failsToCompile();
+  }
+
+  /**
+   * Pins the source level to Java 8, whose generated code the expected sources show, ahead of
+   * {@code options}.
+   */
+  private static List<String> java8(String... options) {
+    List<String> java8 = new ArrayList<>(Arrays.asList("-source", "8", "-Xlint:-options"));
+    java8.addAll(Arrays.asList(options));
+    return java8;
   }
 }
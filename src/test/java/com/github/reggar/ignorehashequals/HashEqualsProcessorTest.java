@@ -0,0 +1,384 @@
+package com.github.reggar.ignorehashequals;
+
+import com.google.auto.value.processor.AutoValueProcessor;
+import com.google.common.io.ByteStreams;
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.JavaFileObjects;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.lang.model.SourceVersion;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+import static com.google.common.truth.Truth.assertAbout;
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static com.google.testing.compile.Compiler.javac;
+import static com.google.testing.compile.JavaSourcesSubjectFactory.javaSources;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assume.assumeTrue;
+
+public final class HashEqualsProcessorTest {
+  private JavaFileObject generateHashEquals;
+  private JavaFileObject ignoreHashEquals;
+  private JavaFileObject nullable;
+  private JavaFileObject nonNull;
+
+  @Before public void setUp() {
+    generateHashEquals = JavaFileObjects.forSourceString("test.GenerateHashEquals", ""
+        + "package test;\n"
+        + "import java.lang.annotation.Retention;\n"
+        + "import java.lang.annotation.Target;\n"
+        + "import static java.lang.annotation.ElementType.TYPE;\n"
+        + "import static java.lang.annotation.RetentionPolicy.SOURCE;\n"
+        + "@Retention(SOURCE)\n"
+        + "@Target(TYPE)\n"
+        + "public @interface GenerateHashEquals {\n"
+        + "}");
+    ignoreHashEquals = JavaFileObjects.forSourceString("test.IgnoreHashEquals", ""
+        + "package test;\n"
+        + "import java.lang.annotation.Retention;\n"
+        + "import static java.lang.annotation.RetentionPolicy.SOURCE;\n"
+        + "@Retention(SOURCE)\n"
+        + "public @interface IgnoreHashEquals {\n"
+        + "}");
+    nullable = JavaFileObjects.forSourceString("test.Nullable", ""
+        + "package test;\n"
+        + "import java.lang.annotation.Retention;\n"
+        + "import static java.lang.annotation.RetentionPolicy.CLASS;\n"
+        + "@Retention(CLASS)\n"
+        + "public @interface Nullable {\n"
+        + "}");
+    nonNull = JavaFileObjects.forSourceString("test.NonNull", ""
+        + "package test;\n"
+        + "import java.lang.annotation.Retention;\n"
+        + "import static java.lang.annotation.RetentionPolicy.CLASS;\n"
+        + "@Retention(CLASS)\n"
+        + "public @interface NonNull {\n"
+        + "}");
+  }
+
+  @Test public void classWithAccessors() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Person", ""
+            + "package test;\n"
+            + "import java.util.List;\n"
+            + "@GenerateHashEquals\n"
+            + "final class Person {\n"
+            + "  private final String name;\n"
+            + "  @NonNull private final List<String> tags;\n"
+            + "  private final boolean active;\n"
+            + "  @IgnoreHashEquals private final long loadedAt;\n"
+            + "  Person(String name, List<String> tags, boolean active, long loadedAt) {\n"
+            + "    this.name = name;\n"
+            + "    this.tags = tags;\n"
+            + "    this.active = active;\n"
+            + "    this.loadedAt = loadedAt;\n"
+            + "  }\n"
+            + "  String getName() { return name; }\n"
+            + "  List<String> tags() { return tags; }\n"
+            + "  boolean isActive() { return active; }\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/PersonHashEquals", ""
+            + "package test;\n"
+            + "\n"
+            + "final class PersonHashEquals {\n"
+            + "  private PersonHashEquals() {\n"
+            + "  }\n"
+            + "\n"
+            + "  static boolean equals(Person a, Person b) {\n"
+            + "    if (a == b) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (a == null || b == null) {\n"
+            + "      return false;\n"
+            + "    }\n"
+            + "    return (a.isActive() == b.isActive())\n"
+            + "        && (a.tags().size() == b.tags().size())\n"
+            + "        && ((a.getName() == null) ? (b.getName() == null) : a.getName().equals(b.getName()))\n"
+            + "        && (a.tags().equals(b.tags()));\n"
+            + "  }\n"
+            + "\n"
+            + "  static int hashCode(Person value) {\n"
+            + "    if (value == null) {\n"
+            + "      return 0;\n"
+            + "    }\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= (value.getName() == null) ? 0 : value.getName().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= value.tags().hashCode();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= value.isActive() ? 1231 : 1237;\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(generateHashEquals, ignoreHashEquals, nonNull, source))
+            .withCompilerOptions("-source", "8", "-Xlint:-options")
+            .processedWith(new HashEqualsProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void recordComponents() {
+    assumeTrue("records need Java 16", SourceVersion.latestSupported().ordinal() >= 16);
+
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Point", ""
+            + "package test;\n"
+            + "@GenerateHashEquals\n"
+            + "public record Point(int x, @IgnoreHashEquals String label, @Nullable String name,\n"
+            + "    long[] data) {\n"
+            + "  @Override public boolean equals(Object o) {\n"
+            + "    return o instanceof Point && PointHashEquals.equals(this, (Point) o);\n"
+            + "  }\n"
+            + "  @Override public int hashCode() {\n"
+            + "    return PointHashEquals.hashCode(this);\n"
+            + "  }\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/PointHashEquals", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.util.Arrays;\n"
+            + "import java.util.Objects;\n"
+            + "\n"
+            + "public final class PointHashEquals {\n"
+            + "  private PointHashEquals() {\n"
+            + "  }\n"
+            + "\n"
+            + "  public static boolean equals(Point a, Point b) {\n"
+            + "    if (a == b) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (a == null || b == null) {\n"
+            + "      return false;\n"
+            + "    }\n"
+            + "    return (a.x() == b.x())\n"
+            + "        && (Objects.equals(a.name(), b.name()))\n"
+            + "        && (Arrays.equals(a.data(), b.data()));\n"
+            + "  }\n"
+            + "\n"
+            + "  public static int hashCode(Point value) {\n"
+            + "    if (value == null) {\n"
+            + "      return 0;\n"
+            + "    }\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= value.x();\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= Objects.hashCode(value.name());\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= Arrays.hashCode(value.data());\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(generateHashEquals, ignoreHashEquals, nullable, source))
+            .processedWith(new HashEqualsProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void arrayPropertiesCompareContents() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Matrix", ""
+            + "package test;\n"
+            + "@GenerateHashEquals\n"
+            + "final class Matrix {\n"
+            + "  private final int[] a;\n"
+            + "  private final Object[] b;\n"
+            + "  private final int[][] c;\n"
+            + "  private final String[][] d;\n"
+            + "  Matrix(int[] a, Object[] b, int[][] c, String[][] d) {\n"
+            + "    this.a = a;\n"
+            + "    this.b = b;\n"
+            + "    this.c = c;\n"
+            + "    this.d = d;\n"
+            + "  }\n"
+            + "  int[] a() { return a; }\n"
+            + "  Object[] b() { return b; }\n"
+            + "  int[][] c() { return c; }\n"
+            + "  String[][] d() { return d; }\n"
+            + "}\n"
+    );
+
+    JavaFileObject expectedSource = JavaFileObjects.forSourceString("test/MatrixHashEquals", ""
+            + "package test;\n"
+            + "\n"
+            + "import java.util.Arrays;\n"
+            + "\n"
+            + "final class MatrixHashEquals {\n"
+            + "  private MatrixHashEquals() {\n"
+            + "  }\n"
+            + "\n"
+            + "  static boolean equals(Matrix a, Matrix b) {\n"
+            + "    if (a == b) {\n"
+            + "      return true;\n"
+            + "    }\n"
+            + "    if (a == null || b == null) {\n"
+            + "      return false;\n"
+            + "    }\n"
+            + "    return (Arrays.equals(a.a(), b.a()))\n"
+            + "        && (Arrays.deepEquals(a.b(), b.b()))\n"
+            + "        && (Arrays.deepEquals(a.c(), b.c()))\n"
+            + "        && (Arrays.deepEquals(a.d(), b.d()));\n"
+            + "  }\n"
+            + "\n"
+            + "  static int hashCode(Matrix value) {\n"
+            + "    if (value == null) {\n"
+            + "      return 0;\n"
+            + "    }\n"
+            + "    int h = 1;\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= Arrays.hashCode(value.a());\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= Arrays.deepHashCode(value.b());\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= Arrays.deepHashCode(value.c());\n"
+            + "    h *= 1000003;\n"
+            + "    h ^= Arrays.deepHashCode(value.d());\n"
+            + "    return h;\n"
+            + "  }\n"
+            + "}"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(generateHashEquals, source))
+            .withCompilerOptions("-source", "8", "-Xlint:-options")
+            .processedWith(new HashEqualsProcessor())
+            .compilesWithoutError()
+            .and()
+            .generatesSources(expectedSource);
+  }
+
+  @Test public void nullFieldsAreComparedAndHashedSafely() throws Exception {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Person", ""
+            + "package test;\n"
+            + "import java.util.List;\n"
+            + "@GenerateHashEquals\n"
+            + "public final class Person {\n"
+            + "  private final String name;\n"
+            + "  private final List<String> tags;\n"
+            + "  public Person(String name, List<String> tags) {\n"
+            + "    this.name = name;\n"
+            + "    this.tags = tags;\n"
+            + "  }\n"
+            + "  String getName() { return name; }\n"
+            + "  List<String> tags() { return tags; }\n"
+            + "}\n"
+    );
+
+    Compilation compilation = javac()
+        .withProcessors(new HashEqualsProcessor())
+        .withOptions("-source", "8", "-Xlint:-options")
+        .compile(generateHashEquals, source);
+    assertThat(compilation).succeeded();
+
+    ClassLoader classLoader = classLoader(compilation);
+    Class<?> person = classLoader.loadClass("test.Person");
+    Constructor<?> constructor = person.getConstructor(String.class, List.class);
+    Object nameless = constructor.newInstance(null, Arrays.asList("a", "b"));
+    Object untagged = constructor.newInstance("Ada", null);
+    Object empty = constructor.newInstance(null, null);
+
+    Class<?> helper = classLoader.loadClass("test.PersonHashEquals");
+    Method equals = helper.getDeclaredMethod("equals", person, person);
+    Method hashCode = helper.getDeclaredMethod("hashCode", person);
+    equals.setAccessible(true);
+    hashCode.setAccessible(true);
+
+    assertEquals(true, equals.invoke(null, nameless, constructor.newInstance(null,
+        Arrays.asList("a", "b"))));
+    assertEquals(false, equals.invoke(null, nameless, untagged));
+    assertEquals(false, equals.invoke(null, untagged, empty));
+    assertEquals(true, equals.invoke(null, empty, constructor.newInstance(null, null)));
+    assertEquals(hashCode.invoke(null, empty),
+        hashCode.invoke(null, constructor.newInstance(null, null)));
+    hashCode.invoke(null, nameless);
+    hashCode.invoke(null, untagged);
+  }
+
+  @Test public void declaresTheExtensionOptions() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "import com.google.auto.value.AutoValue;\n"
+            + "@AutoValue public abstract class Test {\n"
+            + "public abstract int a();\n"
+            + "}\n"
+    );
+
+    Compilation compilation = javac()
+        .withProcessors(new AutoValueProcessor(), new HashEqualsProcessor())
+        .withOptions("-source", "8", "-Xlint:-options",
+            "-AignoreHashEquals.equalsOrder=declaration",
+            "-AignoreHashEquals.hashStrategy=murmur3",
+            "-AignoreHashEquals.equalsProfile=none.properties",
+            "-AignoreHashEquals.recordEqualsProfile=false",
+            "-AignoreHashEquals.stats=notes",
+            "-AignoreHashEquals.instrument=false")
+        .compile(source);
+    assertThat(compilation).succeeded();
+    for (Diagnostic<? extends JavaFileObject> warning : compilation.warnings()) {
+      assertFalse(warning.getMessage(null),
+          warning.getMessage(null).contains("not recognized by any processor"));
+    }
+  }
+
+  @Test public void includedFieldWithoutAccessorFails() {
+    JavaFileObject source = JavaFileObjects.forSourceString("test.Test", ""
+            + "package test;\n"
+            + "@GenerateHashEquals\n"
+            + "final class Test {\n"
+            + "  private final int a;\n"
+            + "  @IgnoreHashEquals private final int b;\n"
+            + "  Test(int a, int b) { this.a = a; this.b = b; }\n"
+            + "}\n"
+    );
+
+    assertAbout(javaSources())
+            .that(Arrays.asList(generateHashEquals, ignoreHashEquals, source))
+            .withCompilerOptions("-source", "8", "-Xlint:-options")
+            .processedWith(new HashEqualsProcessor())
+            .failsToCompile()
+            .withErrorContaining("Field a has no accessor for TestHashEquals to read it through.");
+  }
+
+  /** Loads the classes that {@code compilation} wrote, and nothing else from the test sources. */
+  private static ClassLoader classLoader(final Compilation compilation) {
+    return new ClassLoader(HashEqualsProcessorTest.class.getClassLoader()) {
+      @Override protected Class<?> findClass(String name) throws ClassNotFoundException {
+        String path = "/" + name.replace('.', '/') + ".class";
+        for (JavaFileObject file : compilation.generatedFiles()) {
+          if (file.getKind() == JavaFileObject.Kind.CLASS
+              && file.toUri().getPath().endsWith(path)) {
+            try (InputStream in = file.openInputStream()) {
+              byte[] bytes = ByteStreams.toByteArray(in);
+              return defineClass(name, bytes, 0, bytes.length);
+            } catch (IOException e) {
+              throw new ClassNotFoundException(name, e);
+            }
+          }
+        }
+        throw new ClassNotFoundException(name);
+      }
+    };
+  }
+}
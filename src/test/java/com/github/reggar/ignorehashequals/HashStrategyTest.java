@@ -0,0 +1,19 @@
+package com.github.reggar.ignorehashequals;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HashStrategyTest {
+
+  @Test public void from() throws Exception {
+    assertEquals(HashStrategy.AUTO_VALUE, HashStrategy.from(null));
+    assertEquals(HashStrategy.AUTO_VALUE, HashStrategy.from("AUTO_VALUE"));
+    assertEquals(HashStrategy.MURMUR3, HashStrategy.from("murmur3"));
+    assertEquals(HashStrategy.XXHASH, HashStrategy.from("XxHash"));
+  }
+
+  @Test(expected = RuntimeException.class) public void fromUnknown() throws Exception {
+    HashStrategy.from("fnv");
+  }
+}
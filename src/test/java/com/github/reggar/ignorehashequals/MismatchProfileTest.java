@@ -0,0 +1,36 @@
+package com.github.reggar.ignorehashequals;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MismatchProfileTest {
+
+  @Test public void read() throws Exception {
+    MismatchProfile profile = MismatchProfile.read(new StringReader(""
+        + "# First differing property in equals(), per class.\n"
+        + "test.Test#a=12\n"
+        + "\n"
+        + "test.Parent.Test#b = 3\n"
+        + "test.Test#a=1\n"));
+
+    assertFalse(profile.isEmpty());
+    assertEquals(13, profile.mismatches("test.Test", "a"));
+    assertEquals(3, profile.mismatches("test.Parent.Test", "b"));
+    assertEquals(0, profile.mismatches("test.Test", "b"));
+  }
+
+  @Test public void readEmpty() throws Exception {
+    assertTrue(MismatchProfile.read(new StringReader("# nothing recorded\n")).isEmpty());
+    assertTrue(MismatchProfile.EMPTY.isEmpty());
+  }
+
+  @Test(expected = IOException.class) public void readMalformed() throws Exception {
+    MismatchProfile.read(new StringReader("test.Test#a=many\n"));
+  }
+}
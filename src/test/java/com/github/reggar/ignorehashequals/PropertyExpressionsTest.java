@@ -0,0 +1,96 @@
+package com.github.reggar.ignorehashequals;
+
+import com.google.testing.compile.CompilationRule;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+
+import static org.junit.Assert.assertEquals;
+
+public class PropertyExpressionsTest {
+  @Rule public final CompilationRule compilation = new CompilationRule();
+
+  interface Values {
+    int count();
+    String string();
+    int[] array();
+    List<String> list();
+    Map<String, String> map();
+  }
+
+  @Test public void loneCollectionIsSizeChecked() throws Exception {
+    List<Property> properties = Arrays.asList(property("count", false), property("list", false));
+    assertEquals(Collections.singletonList(properties.get(1)),
+        PropertyExpressions.getSizeCheckedProperties(properties));
+  }
+
+  @Test public void mapCountsAsCollection() throws Exception {
+    List<Property> properties = Collections.singletonList(property("map", false));
+    assertEquals(properties, PropertyExpressions.getSizeCheckedProperties(properties));
+  }
+
+  @Test public void loneStringOrArrayIsNotSizeChecked() throws Exception {
+    assertEquals(Collections.<Property>emptyList(), PropertyExpressions.getSizeCheckedProperties(
+        Arrays.asList(property("count", false), property("string", false))));
+    assertEquals(Collections.<Property>emptyList(), PropertyExpressions.getSizeCheckedProperties(
+        Arrays.asList(property("count", false), property("array", false))));
+  }
+
+  @Test public void stringAndArrayAreSizeChecked() throws Exception {
+    List<Property> properties = Arrays.asList(property("string", false), property("array", false));
+    assertEquals(properties, PropertyExpressions.getSizeCheckedProperties(properties));
+  }
+
+  @Test public void nullablePropertiesAreNotSizeChecked() throws Exception {
+    assertEquals(Collections.<Property>emptyList(), PropertyExpressions.getSizeCheckedProperties(
+        Collections.singletonList(property("list", true))));
+    assertEquals(Collections.<Property>emptyList(), PropertyExpressions.getSizeCheckedProperties(
+        Arrays.asList(property("string", true), property("array", false))));
+  }
+
+  @Test public void conjunctionComparesSizesBeforeFirstDeepComparison() throws Exception {
+    PropertyExpressions expressions = new PropertyExpressions("a", "b", SourceVersion.RELEASE_8);
+    assertEquals(""
+            + "(a.count() == b.count())\n"
+            + "&& (a.string().length() == b.string().length())\n"
+            + "&& (a.list().size() == b.list().size())\n"
+            + "&& (a.string().equals(b.string()))\n"
+            + "&& (a.list().equals(b.list()))",
+        expressions.conjunction(Arrays.asList(
+            property("count", false), property("string", false), property("list", false)))
+            .toString());
+  }
+
+  @Test public void conjunctionWithoutSizeCheckedProperties() throws Exception {
+    PropertyExpressions expressions = new PropertyExpressions("a", "b", SourceVersion.RELEASE_8);
+    assertEquals(""
+            + "(a.count() == b.count())\n"
+            + "&& (a.string().equals(b.string()))",
+        expressions.conjunction(Arrays.asList(property("count", false), property("string", false)))
+            .toString());
+  }
+
+  private Property property(String name, boolean nullable) {
+    TypeElement values =
+        compilation.getElements().getTypeElement(Values.class.getCanonicalName());
+    for (ExecutableElement method : ElementFilter.methodsIn(values.getEnclosedElements())) {
+      if (method.getSimpleName().contentEquals(name)) {
+        TypeCategory category = TypeCategory.of(method.getReturnType(), compilation.getTypes(),
+            compilation.getElements());
+        return new Property(name, method, Collections.<String>emptySet(), true, nullable,
+            category);
+      }
+    }
+    throw new AssertionError("No method " + name);
+  }
+}
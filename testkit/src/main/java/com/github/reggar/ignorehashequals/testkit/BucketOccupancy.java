@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2016 Robert Eggar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.reggar.ignorehashequals.testkit;
+
+/**
+ * How the distinct values of a {@link HashDistribution} would spread over the bins of a
+ * {@code HashMap} or {@code ConcurrentHashMap} table of a fixed size, next to what a uniformly
+ * random hash would give. Both maps spread a hash code with {@code h ^ (h >>> 16)} and pick the
+ * bin from its low bits, so they fill the same bins.
+ */
+public final class BucketOccupancy {
+  /** The bin size beyond which both maps turn a bin's list into a tree. */
+  static final int TREEIFY_THRESHOLD = 8;
+  /** Smaller tables are resized instead of having bins treeified. */
+  static final int MIN_TREEIFY_CAPACITY = 64;
+
+  private final int tableSize;
+  private final int entries;
+  private final int occupiedBins;
+  private final int largestBin;
+  private final int treeifiedBins;
+
+  BucketOccupancy(int tableSize, int[] hashes) {
+    int[] bins = new int[tableSize];
+    for (int hash : hashes) {
+      bins[(tableSize - 1) & (hash ^ (hash >>> 16))]++;
+    }
+
+    int occupied = 0;
+    int largest = 0;
+    int treeified = 0;
+    for (int bin : bins) {
+      if (bin > 0) {
+        occupied++;
+      }
+      largest = Math.max(largest, bin);
+      if (bin > TREEIFY_THRESHOLD && tableSize >= MIN_TREEIFY_CAPACITY) {
+        treeified++;
+      }
+    }
+    this.tableSize = tableSize;
+    this.entries = hashes.length;
+    this.occupiedBins = occupied;
+    this.largestBin = largest;
+    this.treeifiedBins = treeified;
+  }
+
+  /** The number of bins, a power of two. */
+  public int tableSize() {
+    return tableSize;
+  }
+
+  /** The number of distinct values placed in the table. */
+  public int entries() {
+    return entries;
+  }
+
+  public int occupiedBins() {
+    return occupiedBins;
+  }
+
+  /** The number of bins that a uniformly random hash would be expected to occupy. */
+  public double expectedOccupiedBins() {
+    return HashDistribution.expectedOccupied(tableSize, entries);
+  }
+
+  public int largestBin() {
+    return largestBin;
+  }
+
+  /**
+   * The number of bins holding more than eight entries, which both maps would turn into trees,
+   * or 0 for tables smaller than 64 bins, which they would resize instead.
+   */
+  public int treeifiedBins() {
+    return treeifiedBins;
+  }
+
+  /** The fraction of entries that share their bin with an entry placed before them. */
+  public double collisionRate() {
+    return entries == 0 ? 0 : (entries - occupiedBins) / (double) entries;
+  }
+
+  /** The {@link #collisionRate} that a uniformly random hash would be expected to give. */
+  public double expectedCollisionRate() {
+    return entries == 0 ? 0 : (entries - expectedOccupiedBins()) / entries;
+  }
+
+  @Override public String toString() {
+    return String.format("BucketOccupancy{tableSize=%d, entries=%d, occupiedBins=%d (expected "
+            + "%.1f), largestBin=%d, treeifiedBins=%d, collisionRate=%.4f (expected %.4f)}",
+        tableSize, entries, occupiedBins, expectedOccupiedBins(), largestBin, treeifiedBins,
+        collisionRate(), expectedCollisionRate());
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2016 Robert Eggar.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.reggar.ignorehashequals.testkit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * Statistics on the {@code hashCode()} of a sample of values, for tests asserting that the
+ * properties a value class includes in its hash code still spread its instances well. Equal values
+ * in the sample count once, since a hash container holds them once.
+ *
+ * <pre>{@code
+ * HashDistribution distribution =
+ *     HashDistribution.of(10_000, i -> Request.create("tenant" + i % 50, i));
+ * assertEquals(0, distribution.buckets(16_384).treeifiedBins());
+ * assertTrue(distribution.hashCollisions() <= 2 * distribution.expectedHashCollisions() + 1);
+ * }</pre>
+ *
+ * <p>Besides the container view of {@link #buckets}, it reports how many distinct values share a
+ * full 32-bit hash code, how far each bit of the hash codes is from being set half of the time,
+ * and the avalanche between values generated one after the other, which usually differ in a
+ * single property: ideally each hash bit flips with probability one half.
+ */
+public final class HashDistribution {
+  private final int sampleSize;
+  private final int[] hashes;
+
+  private HashDistribution(int sampleSize, int[] hashes) {
+    this.sampleSize = sampleSize;
+    this.hashes = hashes;
+  }
+
+  /** The distribution of the hash codes of {@code sample}, in iteration order. */
+  public static HashDistribution of(Collection<?> sample) {
+    Set<Object> distinct = new LinkedHashSet<>(sample);
+    int[] hashes = new int[distinct.size()];
+    int i = 0;
+    for (Object value : distinct) {
+      hashes[i++] = value.hashCode();
+    }
+    return new HashDistribution(sample.size(), hashes);
+  }
+
+  /** The distribution of the hash codes of {@code generator.apply(i)} for i from 0 to size - 1. */
+  public static HashDistribution of(int size, IntFunction<?> generator) {
+    List<Object> sample = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      sample.add(generator.apply(i));
+    }
+    return of(sample);
+  }
+
+  public int sampleSize() {
+    return sampleSize;
+  }
+
+  public int distinctValues() {
+    return hashes.length;
+  }
+
+  public int distinctHashes() {
+    int[] sorted = hashes.clone();
+    Arrays.sort(sorted);
+    int distinct = 0;
+    for (int i = 0; i < sorted.length; i++) {
+      if (i == 0 || sorted[i] != sorted[i - 1]) {
+        distinct++;
+      }
+    }
+    return distinct;
+  }
+
+  /** The number of distinct values whose hash code an earlier distinct value already had. */
+  public int hashCollisions() {
+    return distinctValues() - distinctHashes();
+  }
+
+  /** The {@link #hashCollisions} expected of uniformly random 32-bit hash codes. */
+  public double expectedHashCollisions() {
+    return hashes.length - expectedOccupied(1L << 32, hashes.length);
+  }
+
+  /**
+   * The occupancy of a {@code HashMap} or {@code ConcurrentHashMap} table with {@code tableSize}
+   * bins, rounded up to a power of two as both maps do, holding the distinct values.
+   */
+  public BucketOccupancy buckets(int tableSize) {
+    if (tableSize <= 0 || tableSize > 1 << 30) {
+      throw new IllegalArgumentException("tableSize must be in [1, 2^30], was " + tableSize);
+    }
+    int size = Integer.highestOneBit(tableSize);
+    return new BucketOccupancy(size < tableSize ? size << 1 : size, hashes);
+  }
+
+  /**
+   * The largest distance, over the 32 bits, between the fraction of hash codes with the bit set
+   * and one half. 0 is ideal; 0.5 means some bit is always or never set.
+   */
+  public double bitBias() {
+    if (hashes.length == 0) {
+      return 0;
+    }
+    double bias = 0;
+    for (int bit = 0; bit < 32; bit++) {
+      int set = 0;
+      for (int hash : hashes) {
+        set += (hash >>> bit) & 1;
+      }
+      bias = Math.max(bias, Math.abs(set / (double) hashes.length - 0.5));
+    }
+    return bias;
+  }
+
+  /**
+   * The mean fraction of the 32 hash bits that differ between consecutive distinct values of the
+   * sample. 0.5 is ideal; a hash whose low bits follow a counter property scores far lower.
+   */
+  public double avalanche() {
+    if (hashes.length < 2) {
+      return 0;
+    }
+    long flipped = 0;
+    for (int i = 1; i < hashes.length; i++) {
+      flipped += Integer.bitCount(hashes[i] ^ hashes[i - 1]);
+    }
+    return flipped / (32.0 * (hashes.length - 1));
+  }
+
+  /**
+   * The largest distance, over the 32 bits, between the fraction of consecutive distinct values
+   * whose hash codes differ in the bit and one half. 0 is ideal.
+   */
+  public double avalancheBias() {
+    if (hashes.length < 2) {
+      return 0;
+    }
+    double bias = 0;
+    for (int bit = 0; bit < 32; bit++) {
+      int flips = 0;
+      for (int i = 1; i < hashes.length; i++) {
+        flips += ((hashes[i] ^ hashes[i - 1]) >>> bit) & 1;
+      }
+      bias = Math.max(bias, Math.abs(flips / (double) (hashes.length - 1) - 0.5));
+    }
+    return bias;
+  }
+
+  @Override public String toString() {
+    return String.format("HashDistribution{sampleSize=%d, distinctValues=%d, distinctHashes=%d, "
+            + "hashCollisions=%d (expected %.2f), bitBias=%.4f, avalanche=%.4f, "
+            + "avalancheBias=%.4f}",
+        sampleSize, distinctValues(), distinctHashes(), hashCollisions(),
+        expectedHashCollisions(), bitBias(), avalanche(), avalancheBias());
+  }
+
+  /** The expected number of bins that {@code entries} uniformly random picks hit. */
+  static double expectedOccupied(double bins, int entries) {
+    return -bins * Math.expm1(entries * Math.log1p(-1 / bins));
+  }
+}
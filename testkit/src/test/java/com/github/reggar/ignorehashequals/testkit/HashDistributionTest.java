@@ -0,0 +1,112 @@
+package com.github.reggar.ignorehashequals.testkit;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HashDistributionTest {
+  /** A value whose hash code is its only included property, a boolean. */
+  private static final class Flag {
+    final int id;
+    final boolean enabled;
+
+    Flag(int id, boolean enabled) {
+      this.id = id;
+      this.enabled = enabled;
+    }
+
+    @Override public boolean equals(Object o) {
+      return o instanceof Flag && ((Flag) o).id == id && ((Flag) o).enabled == enabled;
+    }
+
+    @Override public int hashCode() {
+      return enabled ? 1231 : 1237;
+    }
+  }
+
+  /** Mixed sequential ints, standing in for a well spread hash code. */
+  private static final IntFunction<Object> MIXED = new IntFunction<Object>() {
+    @Override public Object apply(int i) {
+      long h = (i + 1) * 0x9e3779b97f4a7c15L;
+      h ^= h >>> 32;
+      h *= 0xff51afd7ed558ccdL;
+      return (int) (h ^ (h >>> 32));
+    }
+  };
+
+  @Test public void equalValuesCountOnce() {
+    HashDistribution distribution = HashDistribution.of(Arrays.asList("a", "b", "a"));
+
+    assertEquals(3, distribution.sampleSize());
+    assertEquals(2, distribution.distinctValues());
+    assertEquals(2, distribution.distinctHashes());
+    assertEquals(0, distribution.hashCollisions());
+  }
+
+  @Test public void fullHashCollisions() {
+    // "Aa" and "BB" famously share a String hash code.
+    HashDistribution distribution = HashDistribution.of(Arrays.asList("Aa", "BB", "C"));
+
+    assertEquals(1, distribution.hashCollisions());
+    assertTrue(distribution.expectedHashCollisions() < 1e-8);
+  }
+
+  @Test public void wellSpreadHash() {
+    HashDistribution distribution = HashDistribution.of(10_000, MIXED);
+    BucketOccupancy buckets = distribution.buckets(16_384);
+
+    assertEquals(10_000, distribution.distinctValues());
+    assertTrue(distribution.toString(), distribution.bitBias() < 0.05);
+    assertTrue(distribution.toString(), Math.abs(distribution.avalanche() - 0.5) < 0.02);
+    assertTrue(distribution.toString(), distribution.avalancheBias() < 0.05);
+    assertEquals(0, buckets.treeifiedBins());
+    assertTrue(buckets.toString(),
+        Math.abs(buckets.collisionRate() - buckets.expectedCollisionRate()) < 0.02);
+  }
+
+  @Test public void booleanOnlyHash() {
+    HashDistribution distribution = HashDistribution.of(1_000, new IntFunction<Object>() {
+      @Override public Object apply(int i) {
+        return new Flag(i, i % 2 == 0);
+      }
+    });
+    BucketOccupancy buckets = distribution.buckets(2_048);
+
+    assertEquals(1_000, distribution.distinctValues());
+    assertEquals(2, distribution.distinctHashes());
+    assertEquals(998, distribution.hashCollisions());
+    assertEquals(0.5, distribution.bitBias(), 0);
+    assertEquals(2, buckets.occupiedBins());
+    assertEquals(2, buckets.treeifiedBins());
+    assertEquals(500, buckets.largestBin());
+    assertTrue(buckets.toString(), buckets.collisionRate() > 0.99);
+    assertTrue(buckets.toString(), buckets.expectedCollisionRate() < 0.25);
+  }
+
+  @Test public void tableSizeIsRoundedUpToAPowerOfTwo() {
+    HashDistribution distribution = HashDistribution.of(100, MIXED);
+
+    assertEquals(128, distribution.buckets(100).tableSize());
+    assertEquals(64, distribution.buckets(64).tableSize());
+    assertEquals(1, distribution.buckets(1).tableSize());
+  }
+
+  @Test public void smallTablesAreNotTreeified() {
+    HashDistribution distribution = HashDistribution.of(100, new IntFunction<Object>() {
+      @Override public Object apply(int i) {
+        return new Flag(i, true);
+      }
+    });
+
+    assertEquals(0, distribution.buckets(32).treeifiedBins());
+    assertEquals(1, distribution.buckets(64).treeifiedBins());
+  }
+
+  @Test(expected = IllegalArgumentException.class) public void tableSizeMustBePositive() {
+    HashDistribution.of(Arrays.asList(1, 2)).buckets(0);
+  }
+}